@@ -11,6 +11,7 @@ public class Answer {
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
     private boolean isAccepted;
+    private int version;
 
     //constructor getter and setter
     public Answer(int questionId, String content, String authorUserName) {
@@ -78,6 +79,13 @@ public class Answer {
         this.isAccepted = isAccepted;
         this.updatedAt = LocalDateTime.now(); //update the updatedAt time
     }   
+    //row version this copy was read at; updates only apply if the row still has it
+    public int getVersion() {
+        return version;
+    }
+    public void setVersion(int version) {
+        this.version = version;
+    }
     //accept the answer
     public void markAsAccepted() {
         this.isAccepted = true;
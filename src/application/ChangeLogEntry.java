@@ -0,0 +1,58 @@
+package application;
+
+import java.time.LocalDateTime;
+
+//one row of the change log: a question or answer that was inserted, updated or deleted
+public class ChangeLogEntry {
+    public enum Entity { QUESTION, ANSWER }
+    //ARCHIVE: moved to the archive tables, so gone from the board like a delete but still searchable
+    public enum Operation { INSERT, UPDATE, DELETE, ARCHIVE }
+
+    private final long seq;
+    private final Entity entity;
+    private final int entityId;
+    private final int questionId;
+    private final Operation operation;
+    private final LocalDateTime changedAt;
+
+    // constructor
+    public ChangeLogEntry(long seq, Entity entity, int entityId, int questionId, Operation operation,
+                          LocalDateTime changedAt) {
+        this.seq = seq;
+        this.entity = entity;
+        this.entityId = entityId;
+        this.questionId = questionId;
+        this.operation = operation;
+        this.changedAt = changedAt;
+    }
+
+    //getters
+    // position in the log; later commits always have higher numbers
+    public long getSeq() {
+        return seq;
+    }
+    public Entity getEntity() {
+        return entity;
+    }
+    // questionId or answerId, depending on the entity
+    public int getEntityId() {
+        return entityId;
+    }
+    // the question itself, or the question an answer belongs to; answer changes also move the
+    // question's answer count and accepted answer, and deleting a question deletes its answers
+    public int getQuestionId() {
+        return questionId;
+    }
+    public Operation getOperation() {
+        return operation;
+    }
+    public LocalDateTime getChangedAt() {
+        return changedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeLogEntry{seq=" + seq + ", " + operation + " " + entity + " " + entityId
+                + ", questionId=" + questionId + '}';
+    }
+}
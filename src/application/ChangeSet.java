@@ -0,0 +1,62 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+//the changes a client has not seen yet, read from the change log after a sequence number it has seen
+public class ChangeSet {
+    private final List<ChangeLogEntry> entries;
+    private final long lastSeq;
+    private final boolean hasMore;
+    private final boolean resyncRequired;
+
+    // constructor
+    public ChangeSet(List<ChangeLogEntry> entries, long since, boolean hasMore, boolean resyncRequired) {
+        this.entries = new ArrayList<>(entries);
+        this.lastSeq = entries.isEmpty() ? since : entries.get(entries.size() - 1).getSeq();
+        this.hasMore = hasMore;
+        this.resyncRequired = resyncRequired;
+    }
+
+    // changes in the order they were committed
+    public List<ChangeLogEntry> getEntries() {
+        return new ArrayList<>(entries);
+    }
+
+    // sequence number to ask for changes after next time
+    public long getLastSeq() {
+        return lastSeq;
+    }
+
+    // true if more changes follow than fit in this set
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // true if changes the client has not seen were already pruned from the log,
+    // so it has to reload everything instead of applying this set
+    public boolean isResyncRequired() {
+        return resyncRequired;
+    }
+
+    // ids of every question touched by these changes, including through its answers
+    public Set<Integer> getQuestionIds() {
+        Set<Integer> ids = new LinkedHashSet<>();
+        for (ChangeLogEntry entry : entries) {
+            ids.add(entry.getQuestionId());
+        }
+        return ids;
+    }
+
+    // get count of changes in this set
+    public int size() {
+        return entries.size();
+    }
+
+    // true if nothing changed
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+}
@@ -4,12 +4,21 @@ import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.Stage;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
+import databasePart1.AsyncDatabase;
+import databasePart1.BoardReadModel;
 import databasePart1.DiscussionBoardDAO;
+import databasePart1.QuestionQuery;
+import databasePart1.StaleUpdateException;
 import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
 
 //UI for the discussion board
 public class DisussionBoardPage {
@@ -17,17 +26,47 @@ public class DisussionBoardPage {
     private String currentUserName;
     private String currentUserRole;
     private DiscussionBoardDAO dao;
+    //runs the DAO calls off the FX thread and hands the results back to it
+    private final AsyncDatabase async = new AsyncDatabase(Platform::runLater);
 
     //UI components
-    private ListView<Question> questionListView;
+    private ListView<QuestionSummary> questionListView;
     private TextArea questionDetailArea;
     private ListView<Answer> answerListView;
     private TextField searchField;
     private ComboBox<String> filterComboBox;
+    private CheckBox includeArchivedCheckBox;
 
-    //currently selected question 
+    //currently selected question, once its content has loaded
     private Question selectedQuestion;
 
+    //paging state for the question list, further pages load as the user scrolls
+    private static final int PAGE_SIZE = 50;
+    private static final int PREFETCH_ROWS = 10;
+    private ObservableList<QuestionSummary> pagedQuestions;
+    private QuestionPage.Cursor nextPageCursor;
+    private boolean hasMorePages;
+    private boolean pageLoadPending;
+    //question details prefetched for the rows around the selection, most recently used last
+    //only touched on the FX thread, async results are delivered there
+    private static final int DETAIL_CACHE_SIZE = 20;
+    private final Map<Integer, QuestionWithAnswers> detailCache =
+        new LinkedHashMap<Integer, QuestionWithAnswers>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, QuestionWithAnswers> eldest) {
+                return size() > DETAIL_CACHE_SIZE;
+            }
+        };
+    //bumped on every invalidation so a prefetch started before it can't store stale data
+    private int detailCacheGeneration;
+    //filter and keyword behind the current list
+    private QuestionQuery currentQuery;
+    private String activeKeyword;
+    //change log position the board was last loaded at, -1 while unknown
+    private long lastSyncedSeq = -1;
+    //more changes than this since the last sync and a full reload is cheaper
+    private static final int SYNC_LIMIT = 500;
+
     public DisussionBoardPage(Stage stage, String currentUserName, String currentUserRole) {
         this.stage = stage;
         this.currentUserName = currentUserName;
@@ -78,7 +117,12 @@ public class DisussionBoardPage {
         Button clearSearchButton = new Button("Clear");
         clearSearchButton.setOnAction(e -> clearSearch());
 
-        searchBox.getChildren().addAll(new Label("Search:"), searchField, searchButton, clearSearchButton);
+        //old questions are archived; only searched when asked for
+        includeArchivedCheckBox = new CheckBox("Include archived");
+        includeArchivedCheckBox.setOnAction(e -> loadQuestions());
+
+        searchBox.getChildren().addAll(new Label("Search:"), searchField, searchButton, clearSearchButton,
+            includeArchivedCheckBox);
 
         //filter 
         HBox filterBox = new HBox(10);
@@ -104,23 +148,28 @@ public class DisussionBoardPage {
         questionListView.setPrefHeight(600);
 
         //cell factory for question list    
-        questionListView.setCellFactory(lv -> new ListCell<Question>() {
+        questionListView.setCellFactory(lv -> new ListCell<QuestionSummary>() {
             @Override
-            protected void updateItem(Question question, boolean empty) {
+            protected void updateItem(QuestionSummary question, boolean empty) {
                 super.updateItem(question, empty);
                 if (empty || question == null) {
                     setText(null);
                 } else{
                     String status = question.getIsAnswered() ? "[✓]" : "[?]";
-                    setText(status + " " + question.getTitle()+ " (" + question.getAuthorUserName() + ")");
-    
+                    int count = question.getAnswerCount();
+                    setText(status + " " + question.getTitle()+ " (" + question.getAuthorUserName() + ")"
+                            + " - " + count + (count == 1 ? " answer" : " answers"));
+                    //near the end of the loaded rows, fetch the next page
+                    if (getIndex() >= getListView().getItems().size() - PREFETCH_ROWS) {
+                        loadNextPage();
+                    }
                 }
             }
         });
 
         questionListView.getSelectionModel().selectedItemProperty().addListener((obs, oldVal, newVal) -> displayQuestionDetail(newVal)); 
 
-        loadQuestions();
+        refreshData();
         questionsBox.getChildren().addAll(questionLabel, questionListView);
         return questionsBox;
 
@@ -197,7 +246,7 @@ public class DisussionBoardPage {
         //refresh button
         Button refreshBtn = new Button("Refresh");
         refreshBtn.setPrefWidth(180);
-        refreshBtn.setOnAction(e -> refreshData());
+        refreshBtn.setOnAction(e -> syncChanges());
         //back button
         Button backBtn = new Button("Back");
         backBtn.setPrefWidth(180);
@@ -263,13 +312,12 @@ public class DisussionBoardPage {
                     newQuestion.setCategory(category.trim());
                 }
                 
-                try {
-                    dao.createQuestion(newQuestion);
-                    showInfo("Question created successfully!");
-                    refreshData();
-                } catch (SQLException e) {
-                    showError("Failed to create question: " + e.getMessage());
-                }
+                AsyncDatabase.whenDone(async.submit(() -> dao.createQuestion(newQuestion)),
+                    id -> {
+                        showInfo("Question created successfully!");
+                        refreshData();
+                    },
+                    e -> showError("Failed to create question: " + e.getMessage()));
             }
         });
     }
@@ -328,13 +376,27 @@ public class DisussionBoardPage {
                 if (category != null && !category.trim().isEmpty()) {
                     selectedQuestion.setCategory(category.trim());
                 }
-                try {
-                    dao.updateQuestion(selectedQuestion);
-                    showInfo("Question updated successfully!");
-                    refreshData();
-                } catch (SQLException e) {
-                    showError("Failed to update question: " + e.getMessage());
-                }
+                Question edited = selectedQuestion;
+                AsyncDatabase.whenDone(async.submit(() -> dao.updateQuestion(edited)),
+                    updated -> {
+                        if (updated) {
+                            showInfo("Question updated successfully!");
+                        } else {
+                            showError("This question has been deleted");
+                            selectedQuestion = null;
+                        }
+                        refreshData();
+                    },
+                    e -> {
+                        if (e instanceof StaleUpdateException) {
+                            //someone else saved first; show their version instead of overwriting it
+                            showError("This question was changed by someone else while you were editing it. "
+                                + "The latest version has been loaded, please make your changes again.");
+                            refreshData();
+                        } else {
+                            showError("Failed to update question: " + e.getMessage());
+                        }
+                    });
             }
         });
 }
@@ -358,14 +420,14 @@ public class DisussionBoardPage {
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                try {
-                    dao.deleteQuestion(selectedQuestion.getQuestionId());
-                    showInfo("Question deleted successfully");
-                    selectedQuestion = null;
-                    refreshData();
-                } catch (SQLException e) {
-                    showError("Failed to delete question: " + e.getMessage());
-                }
+                int questionId = selectedQuestion.getQuestionId();
+                AsyncDatabase.whenDone(async.submit(() -> dao.deleteQuestion(questionId)),
+                    deleted -> {
+                        showInfo("Question deleted successfully");
+                        selectedQuestion = null;
+                        refreshData();
+                    },
+                    e -> showError("Failed to delete question: " + e.getMessage()));
             }
         });
     }
@@ -388,14 +450,16 @@ public class DisussionBoardPage {
                 showError(error);
                 return;
             }
-            Answer newAnswer = new Answer(selectedQuestion.getQuestionId(), response.trim(), currentUserName);
-            try {
-                dao.createAnswer(newAnswer);
-                showInfo("Answer added successfully!");
-                displayQuestionDetail(selectedQuestion);
-            } catch (SQLException e) {
-                showError("Failed to add answer: " + e.getMessage());
-            }
+            Question question = selectedQuestion;
+            Answer newAnswer = new Answer(question.getQuestionId(), response.trim(), currentUserName);
+            AsyncDatabase.whenDone(async.submit(() -> dao.createAnswer(newAnswer)),
+                id -> {
+                    adjustAnswerCount(question.getQuestionId(), 1);
+                    invalidateDetailCache();
+                    showInfo("Answer added successfully!");
+                    loadQuestionDetail(question.getQuestionId());
+                },
+                e -> showError("Failed to add answer: " + e.getMessage()));
         });
     }
     //edit an answer
@@ -421,13 +485,27 @@ public class DisussionBoardPage {
                 return;
             }
             selectedAnswer.setContent(content.trim());
-            try {
-                dao.updateAnswer(selectedAnswer);
-                showInfo("Answer updated successfully!");
-                displayQuestionDetail(selectedQuestion);
-            } catch (SQLException e) {
-                showError("Failed to update answer: " + e.getMessage());
-            }
+            AsyncDatabase.whenDone(async.submit(() -> dao.updateAnswer(selectedAnswer)),
+                updated -> {
+                    invalidateDetailCache();
+                    if (updated) {
+                        showInfo("Answer updated successfully!");
+                    } else {
+                        showError("This answer has been deleted");
+                    }
+                    loadQuestionDetail(selectedAnswer.getQuestionId());
+                },
+                e -> {
+                    if (e instanceof StaleUpdateException) {
+                        //someone else saved first; show their version instead of overwriting it
+                        invalidateDetailCache();
+                        showError("This answer was changed by someone else while you were editing it. "
+                            + "The latest version has been loaded, please make your changes again.");
+                        loadQuestionDetail(selectedAnswer.getQuestionId());
+                    } else {
+                        showError("Failed to update answer: " + e.getMessage());
+                    }
+                });
         });
     }
     //delete an answer
@@ -449,49 +527,150 @@ public class DisussionBoardPage {
 
         confirm.showAndWait().ifPresent(response -> {
             if (response == ButtonType.OK) {
-                try {
-                    dao.deleteAnswer(selectedAnswer.getAnswerId());
-                    showInfo("Answer deleted successfully");
-                    displayQuestionDetail(selectedQuestion);
-                } catch (SQLException e) {
-                    showError("Failed to delete answer: " + e.getMessage());
-                }
+                AsyncDatabase.whenDone(async.submit(() -> dao.deleteAnswer(selectedAnswer.getAnswerId())),
+                    deleted -> {
+                        if (deleted) {
+                            adjustAnswerCount(selectedAnswer.getQuestionId(), -1);
+                        }
+                        invalidateDetailCache();
+                        showInfo("Answer deleted successfully");
+                        loadQuestionDetail(selectedAnswer.getQuestionId());
+                    },
+                    e -> showError("Failed to delete answer: " + e.getMessage()));
             }
         });
     }
 
     //helper methods
 
-    //load questions 
+    //load questions matching the filter and search, starting again from the first page
     private void loadQuestions() {
-        try {
-            Questions questions = dao.getAllQuestions();
-            ObservableList<Question> questionList = FXCollections.observableArrayList(questions.getAllQuestions());
-            questionListView.setItems(questionList);
-        } catch (SQLException e) { showError("Failed to load questions: " + e.getMessage());}
+        currentQuery = buildQuery();
+        pagedQuestions = FXCollections.observableArrayList();
+        nextPageCursor = null;
+        hasMorePages = true;
+        //a page still loading for the old list is cancelled by the new request
+        pageLoadPending = false;
+        questionListView.setItems(pagedQuestions);
+        loadNextPage();
     }
-        //display question detail
-        private void displayQuestionDetail(Question question) {
-            selectedQuestion = question;
-            if(question == null){
+    //keep a listed answer count in step without reloading the list
+    private void adjustAnswerCount(int questionId, int delta) {
+        for (QuestionSummary summary : pagedQuestions) {
+            if (summary.getQuestionId() == questionId) {
+                summary.setAnswerCount(Math.max(summary.getAnswerCount() + delta, 0));
+                questionListView.refresh();
+                return;
+            }
+        }
+    }
+    //fetch the next page in the background and append it to the list when it arrives,
+    //so a cell layout pass asking for it never waits on the database
+    private void loadNextPage() {
+        if (pageLoadPending || !hasMorePages) {
+            return;
+        }
+        pageLoadPending = true;
+        QuestionQuery query = currentQuery;
+        QuestionPage.Cursor cursor = nextPageCursor;
+        AsyncDatabase.whenDone(async.submitLatest("questions", () -> readModel().findQuestionSummaries(query, cursor)),
+            page -> {
+                pageLoadPending = false;
+                pagedQuestions.addAll(page.getSummaries());
+                nextPageCursor = page.getNextCursor();
+                hasMorePages = page.hasMore();
+            },
+            e -> {
+                pageLoadPending = false;
+                hasMorePages = false;
+                showError("Failed to load questions: " + e.getMessage());
+            });
+    }
+        //display question detail: the listed columns right away, the content and answers once loaded
+        private void displayQuestionDetail(QuestionSummary summary) {
+            selectedQuestion = null;
+            if(summary == null){
+                async.cancel("detail");
                 questionDetailArea.clear();
                 answerListView.setItems(FXCollections.observableArrayList());
                 return;
             }
-            String details = "Title: " + question.getTitle() + "\n\n" +
-            "Author: " + question.getAuthorUserName() + "\n" +
-            "Category: " + (question.getCategory() != null ? question.getCategory() : "N/A") + "\n" +
-            "Created At: " + question.getCreatedAt().toLocalDate() + "\n" +
-            "Status: " + (question.getIsAnswered() ? "Answered" : "Unanswered") + "\n\n" +
-            "Content:\n" + question.getContent();
-            questionDetailArea.setText(details);
-
-            //load answers
-            try {
-                Answers answers = dao.getAnswersForQuestion(question.getQuestionId());
-                ObservableList<Answer> answerList = FXCollections.observableArrayList(answers.getAllAnswers());
-                answerListView.setItems(answerList);
-            } catch (SQLException e) { showError("Failed to load answers: " + e.getMessage());}
+            questionDetailArea.setText(formatDetails(summary.getTitle(), summary.getAuthorUserName(), summary.getCategory(),
+                summary.getCreatedAt(), summary.getIsAnswered(), summary.getAnswerCount(), "Loading..."));
+
+            //content and answers, from the prefetch cache when the neighbours were already fetched
+            QuestionWithAnswers cached = detailCache.get(summary.getQuestionId());
+            if (cached != null) {
+                async.cancel("detail");
+                showQuestionDetail(cached);
+            } else {
+                answerListView.setItems(FXCollections.observableArrayList());
+                loadQuestionDetail(summary.getQuestionId());
+            }
+            prefetchNeighbours(summary);
+        }
+        //load a question's content and answers; a newer selection cancels this load, so stale details never replace current ones
+        private void loadQuestionDetail(int questionId) {
+            AsyncDatabase.whenDone(async.submitLatest("detail", () -> readModel().getQuestionWithAnswers(questionId)),
+                detail -> {
+                    if (detail == null) {
+                        displayQuestionDetail(null);
+                        return;
+                    }
+                    showQuestionDetail(detail);
+                },
+                e -> showError("Failed to load question: " + e.getMessage()));
+        }
+        //show a loaded question with its content and answers
+        private void showQuestionDetail(QuestionWithAnswers detail) {
+            Question question = detail.getQuestion();
+            selectedQuestion = question;
+            questionDetailArea.setText(formatDetails(question.getTitle(), question.getAuthorUserName(), question.getCategory(),
+                question.getCreatedAt(), question.getIsAnswered(), question.getAnswerCount(), question.getContent()));
+            ObservableList<Answer> answerList = FXCollections.observableArrayList(detail.getAnswers().getAllAnswers());
+            answerListView.setItems(answerList);
+        }
+        //text of the detail area
+        private String formatDetails(String title, String author, String category, LocalDateTime createdAt,
+                                     boolean answered, int answerCount, String content) {
+            return "Title: " + title + "\n\n" +
+            "Author: " + author + "\n" +
+            "Category: " + (category != null ? category : "N/A") + "\n" +
+            "Created At: " + createdAt.toLocalDate() + "\n" +
+            "Status: " + (answered ? "Answered" : "Unanswered") + "\n" +
+            "Answers: " + answerCount + "\n\n" +
+            "Content:\n" + content;
+        }
+        //fetch the questions just above and below the selection in the background
+        private void prefetchNeighbours(QuestionSummary summary) {
+            ObservableList<QuestionSummary> items = questionListView.getItems();
+            int index = items.indexOf(summary);
+            if (index < 0) {
+                return;
+            }
+            int generation = detailCacheGeneration;
+            for (int neighbour : new int[] { index - 1, index + 1 }) {
+                if (neighbour < 0 || neighbour >= items.size()) {
+                    continue;
+                }
+                int questionId = items.get(neighbour).getQuestionId();
+                if (detailCache.containsKey(questionId)) {
+                    continue;
+                }
+                AsyncDatabase.whenDone(async.submit(() -> readModel().getQuestionWithAnswers(questionId)),
+                    detail -> {
+                        if (detail != null && generation == detailCacheGeneration) {
+                            detailCache.put(questionId, detail);
+                        }
+                    },
+                    //a failed prefetch just means the detail is loaded on selection instead
+                    e -> { });
+            }
+        }
+        //drop prefetched details after anything on the board changes
+        private void invalidateDetailCache() {
+            detailCacheGeneration++;
+            detailCache.clear();
         }
         //perofm search
         private void performSearch() {
@@ -501,58 +680,118 @@ public class DisussionBoardPage {
                 showError(error);
                 return;
             }
-            try {
-                Questions allQuestions = dao.getAllQuestions();
-                Questions searchResults = allQuestions.search(keyword);
-                ObservableList<Question> resultList = FXCollections.observableArrayList(searchResults.getAllQuestions());
-                questionListView.setItems(resultList);
-            } catch (SQLException e) { showError("Failed to search questions: " + e.getMessage());}
+            activeKeyword = keyword.trim();
+            loadQuestions();
         }
         //clear search
         private void clearSearch() {
             searchField.clear();
+            activeKeyword = null;
+            includeArchivedCheckBox.setSelected(false);
             filterComboBox.setValue("All");
             loadQuestions();
         }
 
         //filter questions
         private void applyFilter() {
-            try {
-                Questions allQuestions = dao.getAllQuestions();
-                Questions filtered;
-                String filter = filterComboBox.getValue();
-
-                switch (filter) {
-                    case "Answered":
-                        filtered = allQuestions.filterByAnsweredStatus(true);
-                        break;
-                    case "Unanswered":
-                        filtered = allQuestions.filterByAnsweredStatus(false);
-                        break;
-                    case "My Questions":
-                        filtered = allQuestions.filterByAuthor(currentUserName);
-                        break;
-                    default:
-                        filtered = allQuestions;
-                        break;
-                }
-                ObservableList<Question> resultList = FXCollections.observableArrayList(filtered.getAllQuestions());
-                questionListView.setItems(resultList);
-            } catch (SQLException e) { showError("Failed to filter questions: " + e.getMessage());}
+            loadQuestions();
         }
-        //refresh data
+        //build the query for the current filter and search keyword
+        private QuestionQuery buildQuery() {
+            QuestionQuery query = new QuestionQuery().keyword(activeKeyword).limit(PAGE_SIZE)
+                .includeArchived(includeArchivedCheckBox.isSelected());
+            String filter = filterComboBox.getValue();
+            switch (filter == null ? "All" : filter) {
+                case "Answered":
+                    query.answered(true);
+                    break;
+                case "Unanswered":
+                    query.answered(false);
+                    break;
+                case "My Questions":
+                    query.author(currentUserName);
+                    break;
+                default:
+                    break;
+            }
+            return query;
+        }
+        //refresh data, noting where the change log stands first so a later sync replays anything that lands meanwhile
         private void refreshData() {
+            invalidateDetailCache();
+            AsyncDatabase.whenDone(async.submit(dao::getLatestChangeSeq),
+                seq -> {
+                    lastSyncedSeq = seq;
+                    reloadBoard();
+                },
+                e -> {
+                    lastSyncedSeq = -1;
+                    reloadBoard();
+                });
+        }
+        private void reloadBoard() {
             loadQuestions();
             if(selectedQuestion != null) {
-                try {
-                    Question refreshed = dao.getQuestionById(selectedQuestion.getQuestionId());
-                    displayQuestionDetail(refreshed);
-                }catch (SQLException e) {displayQuestionDetail(null);}
+                loadQuestionDetail(selectedQuestion.getQuestionId());
             }
         }
+        //refresh only what the change log says changed since the last load; nothing is re-read if nothing changed
+        private void syncChanges() {
+            if (lastSyncedSeq < 0) {
+                refreshData();
+                return;
+            }
+            long since = lastSyncedSeq;
+            //the read model catches up after the changes are read, so it has at least everything they name;
+            //writes made in this process are already in it, this picks up other clients of a shared database
+            AsyncDatabase.whenDone(async.submitLatest("sync", () -> {
+                    ChangeSet changes = dao.changesSince(since, SYNC_LIMIT);
+                    readModel().catchUp();
+                    return changes;
+                }),
+                changes -> {
+                    //pruned past our position, or too much to apply piecemeal
+                    if (changes.isResyncRequired() || changes.hasMore()) {
+                        refreshData();
+                        return;
+                    }
+                    if (changes.isEmpty()) {
+                        return;
+                    }
+                    lastSyncedSeq = changes.getLastSeq();
+                    Set<Integer> changed = changes.getQuestionIds();
+                    detailCacheGeneration++;
+                    detailCache.keySet().removeAll(changed);
+                    //new or deleted questions reflow the list, edits only matter if the question is listed
+                    boolean listChanged = false;
+                    for (ChangeLogEntry entry : changes.getEntries()) {
+                        if (entry.getEntity() == ChangeLogEntry.Entity.QUESTION
+                                && entry.getOperation() != ChangeLogEntry.Operation.UPDATE) {
+                            listChanged = true;
+                        }
+                    }
+                    for (QuestionSummary summary : pagedQuestions) {
+                        listChanged |= changed.contains(summary.getQuestionId());
+                    }
+                    if (listChanged) {
+                        loadQuestions();
+                    }
+                    if (selectedQuestion != null && changed.contains(selectedQuestion.getQuestionId())) {
+                        loadQuestionDetail(selectedQuestion.getQuestionId());
+                    }
+                },
+                e -> showError("Failed to refresh: " + e.getMessage()));
+        }
+
+    //in-memory copy of the board that list, filter and detail reads are served from, loaded by the
+    //first read; only called from database calls, so the load never runs on the FX thread
+    private BoardReadModel readModel() throws SQLException {
+        return BoardReadModel.forPool(dao.getConnectionPool());
+    }
 
     //navigate to home page for role
     private void goBack() {
+        async.cancelAll();
         if(currentUserRole.equals("Admin")) {
             AdminHomePage adminHomePage = new AdminHomePage(stage,currentUserName);
             stage.setScene(adminHomePage.createScene());
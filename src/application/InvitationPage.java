@@ -2,9 +2,12 @@ package application;
 
 
 import databasePart1.*;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import javafx.scene.control.TextArea;
+import javafx.scene.control.TextField;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
@@ -14,6 +17,11 @@ import javafx.stage.Stage;
  */
 
 public class InvitationPage {
+	// Most codes that can be generated in one click
+	private static final int MAX_BATCH = 1000;
+
+	// Runs the inserts off the FX thread
+	private final AsyncDatabase async = new AsyncDatabase(Platform::runLater);
 
 	/**
      * Displays the Invite Page in the provided primary stage.
@@ -32,18 +40,78 @@ public class InvitationPage {
 	    // Button to generate the invitation code
 	    Button showCodeButton = new Button("Generate Invitation Code");
 	    
-	    // Label to display the generated invitation code
+	    // Number of codes to generate at once
+	    TextField countField = new TextField("1");
+	    countField.setPromptText("How many codes");
+	    countField.setMaxWidth(150);
+	    
+	    // Label to display the generated invitation code, or an error
 	    Label inviteCodeLabel = new Label(""); ;
         inviteCodeLabel.setStyle("-fx-font-size: 14px; -fx-font-style: italic;");
         
+        // Generated codes, one per line, so a batch can be copied out
+        TextArea codesArea = new TextArea();
+        codesArea.setEditable(false);
+        codesArea.setMaxWidth(300);
+        codesArea.setPrefRowCount(8);
+        
+        // Size of the pool of codes that can still be redeemed
+        Label statsLabel = new Label("");
+        
         showCodeButton.setOnAction(a -> {
-        	// Generate the invitation code using the databaseHelper and set it to the label
-            String invitationCode = databaseHelper.generateInvitationCode();
-            inviteCodeLabel.setText(invitationCode);
+        	int count;
+        	try {
+        		count = Integer.parseInt(countField.getText().trim());
+        	} catch (NumberFormatException e) {
+        		count = 0;
+        	}
+        	if (count < 1 || count > MAX_BATCH) {
+        		inviteCodeLabel.setText("Enter a number of codes from 1 to " + MAX_BATCH);
+        		return;
+        	}
+        	// Generate the invitation codes in one batch using the databaseHelper and list them
+        	int requested = count;
+        	showCodeButton.setDisable(true);
+        	AsyncDatabase.whenDone(async.submit(() -> databaseHelper.generateInvitationCodes(requested)), codes -> {
+        		showCodeButton.setDisable(false);
+        		inviteCodeLabel.setText(codes.size() == 1 ? codes.get(0) : codes.size() + " codes generated");
+        		codesArea.setText(String.join("\n", codes));
+        		refreshStats(databaseHelper, statsLabel);
+        	}, e -> {
+        		showCodeButton.setDisable(false);
+        		inviteCodeLabel.setText("Could not generate invitation codes");
+        		System.err.println("Database error: " + e.getMessage());
+        		e.printStackTrace();
+        	});
         });
 	    
 
-        layout.getChildren().addAll(userLabel, showCodeButton, inviteCodeLabel);
+        // Button to take an online backup of the database, and the outcome of the latest one
+        Button backupButton = new Button("Back Up Database Now");
+        Label backupLabel = new Label("");
+        BackupService backupService = databaseHelper.getBackupService();
+        if (backupService == null) {
+        	backupButton.setDisable(true);
+        	backupLabel.setText("Backups are taken where the database is served");
+        } else if (backupService.getLastReport() != null) {
+        	backupLabel.setText(describeBackup(backupService.getLastReport()));
+        }
+        backupButton.setOnAction(a -> {
+        	backupButton.setDisable(true);
+        	backupLabel.setText("Backing up...");
+        	AsyncDatabase.whenDone(async.submit(databaseHelper::backupDatabase), report -> {
+        		backupButton.setDisable(false);
+        		backupLabel.setText(describeBackup(report));
+        	}, e -> {
+        		backupButton.setDisable(false);
+        		backupLabel.setText("Backup failed: " + e.getMessage());
+        		e.printStackTrace();
+        	});
+        });
+
+        layout.getChildren().addAll(userLabel, countField, showCodeButton, inviteCodeLabel, codesArea, statsLabel,
+        		backupButton, backupLabel);
+        refreshStats(databaseHelper, statsLabel);
 	    Scene inviteScene = new Scene(layout, 800, 400);
 
 	    // Set the scene to primary stage
@@ -51,4 +119,26 @@ public class InvitationPage {
 	    primaryStage.setTitle("Invite Page");
     	
     }
-}
\ No newline at end of file
+
+    // One line about a finished backup: where it went, its size and how long writers waited.
+    private String describeBackup(BackupReport report) {
+    	return String.format("Backed up to %s (%,d KB) in %.1f s; writers waited at most %.0f ms",
+    			report.getFile().getFileName(), report.getBytes() / 1024, report.getElapsedMillis() / 1000,
+    			report.getMaxWriterStallMillis());
+    }
+
+    // Loads the outstanding-code counts off the FX thread and shows them in the label.
+    private void refreshStats(DatabaseHelper databaseHelper, Label statsLabel) {
+    	AsyncDatabase.whenDone(async.submitLatest("stats", databaseHelper::getInvitationCodeStats), stats -> {
+    		String text = "Outstanding codes: " + stats.getOutstanding()
+    				+ "  (awaiting cleanup: " + stats.getUsed() + " used, " + stats.getExpired() + " expired)";
+    		if (stats.getNextExpiry() != null) {
+    			text += "\nNext expiry: " + stats.getNextExpiry().withNano(0).toString().replace('T', ' ');
+    		}
+    		statsLabel.setText(text);
+    	}, e -> {
+    		statsLabel.setText("Could not load invitation code counts");
+    		e.printStackTrace();
+    	});
+    }
+}
@@ -13,6 +13,9 @@ public class Question {
     private LocalDateTime updatedAt;
     private boolean isAnswered;
     private String category;
+    private int answerCount;
+    private Integer acceptedAnswerId;
+    private int version;
 
     //constructor getter and setter
     public Question(String title, String content, String authorUserName) {
@@ -48,6 +51,13 @@ public class Question {
     public String getCategory() {
         return category;
     }
+    public int getAnswerCount() {
+        return answerCount;
+    }
+    //id of the accepted answer, or null if none is accepted
+    public Integer getAcceptedAnswerId() {
+        return acceptedAnswerId;
+    }
     public void setCategory(String category) {
         this.category = category;
     }
@@ -75,6 +85,19 @@ public class Question {
     public void setQuestionId(int questionId) {
         this.questionId = questionId;
     }  
+    public void setAnswerCount(int answerCount) {
+        this.answerCount = answerCount;
+    }
+    public void setAcceptedAnswerId(Integer acceptedAnswerId) {
+        this.acceptedAnswerId = acceptedAnswerId;
+    }
+    //row version this copy was read at; updates only apply if the row still has it
+    public int getVersion() {
+        return version;
+    }
+    public void setVersion(int version) {
+        this.version = version;
+    }
 
     //display the question
     @Override
@@ -85,6 +108,7 @@ public class Question {
                 ", authorUserName='" + authorUserName + '\'' +
                 ", isAnswered=" + isAnswered +
                 ", category='" + category + '\'' +
+                ", answerCount=" + answerCount +
                 '}';
     }
 }
\ No newline at end of file
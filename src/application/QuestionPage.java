@@ -0,0 +1,71 @@
+package application;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+//one page of questions from the newest-first listing, plus the cursor for the next page
+public class QuestionPage {
+    private final List<Question> questions;
+    private final Cursor nextCursor;
+    private final boolean hasMore;
+
+    // constructor
+    public QuestionPage(List<Question> questions, boolean hasMore) {
+        this.questions = new ArrayList<>(questions);
+        this.hasMore = hasMore;
+        this.nextCursor = questions.isEmpty() ? null : Cursor.after(questions.get(questions.size() - 1));
+    }
+
+    // questions on this page, newest first
+    public List<Question> getQuestions() {
+        return new ArrayList<>(questions);
+    }
+
+    // cursor to pass back to the DAO for the following page, null if this page is empty
+    public Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    // true if there are older questions after this page
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // get count of questions on this page
+    public int size() {
+        return questions.size();
+    }
+
+    //position in the (createdAt DESC, questionId DESC) ordering; a page starts just after it
+    public static class Cursor {
+        private final LocalDateTime createdAt;
+        private final int questionId;
+
+        public Cursor(LocalDateTime createdAt, int questionId) {
+            this.createdAt = createdAt;
+            this.questionId = questionId;
+        }
+
+        // cursor positioned at the given question
+        public static Cursor after(Question question) {
+            return new Cursor(question.getCreatedAt(), question.getQuestionId());
+        }
+        // cursor positioned at the given summary
+        public static Cursor after(QuestionSummary summary) {
+            return new Cursor(summary.getCreatedAt(), summary.getQuestionId());
+        }
+
+        public LocalDateTime getCreatedAt() {
+            return createdAt;
+        }
+        public int getQuestionId() {
+            return questionId;
+        }
+
+        @Override
+        public String toString() {
+            return "Cursor{createdAt=" + createdAt + ", questionId=" + questionId + '}';
+        }
+    }
+}
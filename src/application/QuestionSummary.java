@@ -0,0 +1,71 @@
+package application;
+
+import java.time.LocalDateTime;
+
+//the columns of a question the list view shows; the content is only loaded for the detail view
+public class QuestionSummary {
+    private final int questionId;
+    private final String title;
+    private final String authorUserName;
+    private final LocalDateTime createdAt;
+    private final boolean isAnswered;
+    private final String category;
+    private int answerCount;
+    private final Integer acceptedAnswerId;
+
+    // constructor
+    public QuestionSummary(int questionId, String title, String authorUserName, LocalDateTime createdAt,
+                           boolean isAnswered, String category, int answerCount, Integer acceptedAnswerId) {
+        this.questionId = questionId;
+        this.title = title;
+        this.authorUserName = authorUserName;
+        this.createdAt = createdAt;
+        this.isAnswered = isAnswered;
+        this.category = category;
+        this.answerCount = answerCount;
+        this.acceptedAnswerId = acceptedAnswerId;
+    }
+
+    //getters
+    public int getQuestionId() {
+        return questionId;
+    }
+    public String getTitle() {
+        return title;
+    }
+    public String getAuthorUserName() {
+        return authorUserName;
+    }
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+    public boolean getIsAnswered() {
+        return isAnswered;
+    }
+    public String getCategory() {
+        return category;
+    }
+    public int getAnswerCount() {
+        return answerCount;
+    }
+    //id of the accepted answer, or null if none is accepted
+    public Integer getAcceptedAnswerId() {
+        return acceptedAnswerId;
+    }
+    // kept in step locally when answers are added or deleted from the list view
+    public void setAnswerCount(int answerCount) {
+        this.answerCount = answerCount;
+    }
+
+    //display the summary
+    @Override
+    public String toString() {
+        return "QuestionSummary{" +
+                "questionId=" + questionId +
+                ", title='" + title + '\'' +
+                ", authorUserName='" + authorUserName + '\'' +
+                ", isAnswered=" + isAnswered +
+                ", answerCount=" + answerCount +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package application;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//one page of question summaries from the newest-first listing, plus the cursor for the next page
+public class QuestionSummaryPage {
+    private final List<QuestionSummary> summaries;
+    private final QuestionPage.Cursor nextCursor;
+    private final boolean hasMore;
+
+    // constructor
+    public QuestionSummaryPage(List<QuestionSummary> summaries, boolean hasMore) {
+        this.summaries = new ArrayList<>(summaries);
+        this.hasMore = hasMore;
+        this.nextCursor = summaries.isEmpty() ? null : QuestionPage.Cursor.after(summaries.get(summaries.size() - 1));
+    }
+
+    // summaries on this page, newest first
+    public List<QuestionSummary> getSummaries() {
+        return new ArrayList<>(summaries);
+    }
+
+    // cursor to pass back to the DAO for the following page, null if this page is empty
+    public QuestionPage.Cursor getNextCursor() {
+        return nextCursor;
+    }
+
+    // true if there are older questions after this page
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    // get count of summaries on this page
+    public int size() {
+        return summaries.size();
+    }
+}
@@ -0,0 +1,23 @@
+package application;
+
+//a question together with its answers, as loaded for the detail view
+public class QuestionWithAnswers {
+    private final Question question;
+    private final Answers answers;
+
+    // constructor
+    public QuestionWithAnswers(Question question, Answers answers) {
+        this.question = question;
+        this.answers = answers;
+    }
+
+    // get the question
+    public Question getQuestion() {
+        return question;
+    }
+
+    // get its answers, accepted first then oldest first
+    public Answers getAnswers() {
+        return answers;
+    }
+}
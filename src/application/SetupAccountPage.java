@@ -1,13 +1,12 @@
 package application;
 import passwordEvaluationTestbed.PasswordEvaluator;
 import application.UserNameRecognizer;
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.sql.SQLException;
-
 import databasePart1.*;
 
 /**
@@ -17,6 +16,8 @@ import databasePart1.*;
 public class SetupAccountPage {
 	
     private final DatabaseHelper databaseHelper;
+    // Runs the account setup queries off the FX thread
+    private final AsyncDatabase async = new AsyncDatabase(Platform::runLater);
     // DatabaseHelper to handle database operations.
     public SetupAccountPage(DatabaseHelper databaseHelper) {
         this.databaseHelper = databaseHelper;
@@ -65,32 +66,34 @@ public class SetupAccountPage {
                 errorLabel.setText(passwordError);
                 return;
             }
-            try {
+            // Check the name and code and register off the FX thread
+            User user=new User(userName, password, "user");
+            setupButton.setDisable(true);
+            AsyncDatabase.whenDone(async.submitLatest("setup", () -> {
             	// Check if the user already exists
-            	if(!databaseHelper.doesUserExist(userName)) {
-            		
-            		// Validate the invitation code
-            		if(databaseHelper.validateInvitationCode(code)) {
-            			
-            			// Create a new user and register them in the database
-		            	User user=new User(userName, password, "user");
-		                databaseHelper.register(user);
-		                
-		             // Navigate to the Welcome Login Page
-		                new WelcomeLoginPage(databaseHelper).show(primaryStage,user);
-            		}
-            		else {
-            			errorLabel.setText("Please enter a valid invitation code");
-            		}
+            	if(databaseHelper.doesUserExist(userName)) {
+            		return "This useruserName is taken!!.. Please use another to setup an account";
+            	}
+            	// Redeem the invitation code and register the new user together, so a failed
+            	// registration doesn't use up the code
+            	if(!databaseHelper.registerWithInvitationCode(user, code)) {
+            		return "Please enter a valid invitation code";
+            	}
+            	return null;
+            }), error -> {
+            	setupButton.setDisable(false);
+            	if(error==null) {
+            		// Navigate to the Welcome Login Page
+            		new WelcomeLoginPage(databaseHelper).show(primaryStage,user);
             	}
             	else {
-            		errorLabel.setText("This useruserName is taken!!.. Please use another to setup an account");
+            		errorLabel.setText(error);
             	}
-            	
-            } catch (SQLException e) {
+            }, e -> {
+            	setupButton.setDisable(false);
                 System.err.println("Database error: " + e.getMessage());
                 e.printStackTrace();
-            }
+            });
         });
 
         VBox layout = new VBox(10);
@@ -1,12 +1,11 @@
 package application;
 
+import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.sql.SQLException;
-
 import databasePart1.*;
 
 /**
@@ -16,6 +15,8 @@ import databasePart1.*;
 public class UserLoginPage {
 	
     private final DatabaseHelper databaseHelper;
+    // Runs the login queries off the FX thread
+    private final AsyncDatabase async = new AsyncDatabase(Platform::runLater);
 
     public UserLoginPage(DatabaseHelper databaseHelper) {
         this.databaseHelper = databaseHelper;
@@ -42,32 +43,33 @@ public class UserLoginPage {
         	// Retrieve user inputs
             String userName = userNameField.getText();
             String password = passwordField.getText();
-            try {
-            	User user=new User(userName, password, "");
-            	WelcomeLoginPage welcomeLoginPage = new WelcomeLoginPage(databaseHelper);
-            	
-            	// Retrieve the user's role from the database using userName
-            	String role = databaseHelper.getUserRole(userName);
-            	
+            User user=new User(userName, password, "");
+            
+            // Look up the role and check the password off the FX thread
+            loginButton.setDisable(true);
+            AsyncDatabase.whenDone(async.submitLatest("login", () -> {
+            	// Check the credentials and retrieve the user's role in one query
+            	String role = databaseHelper.authenticate(userName, password);
             	if(role!=null) {
             		user.setRole(role);
-            		if(databaseHelper.login(user)) {
-            			welcomeLoginPage.show(primaryStage,user);
-            		}
-            		else {
-            			// Display an error if the login fails
-                        errorLabel.setText("Error logging in");
-            		}
+            		return null;
+            	}
+            	// Tell a missing account from a wrong password, usually from the user cache
+            	return databaseHelper.doesUserExist(userName) ? "Error logging in" : "user account doesn't exists";
+            }), error -> {
+            	loginButton.setDisable(false);
+            	if(error==null) {
+            		new WelcomeLoginPage(databaseHelper).show(primaryStage,user);
             	}
             	else {
-            		// Display an error if the account does not exist
-                    errorLabel.setText("user account doesn't exists");
+            		// Display an error if the account does not exist or the login fails
+                    errorLabel.setText(error);
             	}
-            	
-            } catch (SQLException e) {
+            }, e -> {
+            	loginButton.setDisable(false);
                 System.err.println("Database error: " + e.getMessage());
                 e.printStackTrace();
-            } 
+            });
         });
 
         VBox layout = new VBox(10);
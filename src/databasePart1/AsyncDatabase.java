@@ -0,0 +1,130 @@
+package databasePart1;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * The AsyncDatabase class runs DatabaseHelper and DiscussionBoardDAO calls on virtual threads so
+ * the UI thread never waits on JDBC. Each call's CompletableFuture is completed on the callback
+ * executor given to the constructor (Platform::runLater for JavaFX pages), so code chained onto it
+ * may touch UI controls directly.
+ *
+ * Calls submitted on a named channel supersede one another: submitting a new call cancels the
+ * previous one on the same channel, and a cancelled call never reaches its callbacks. A call that
+ * is already running is left to finish and its result dropped, because interrupting a thread inside
+ * H2 closes the database file's channel and fails every later read.
+ */
+public class AsyncDatabase {
+
+    //a database call to run off the UI thread
+    public interface Call<T> {
+        T call() throws SQLException;
+    }
+
+    //one virtual thread per call; the connection pool bounds how many reach the database at once
+    private static final ExecutorService VIRTUAL_THREADS = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Executor callbackExecutor;
+    //latest call on each channel
+    private final Map<String, Pending<?>> channels = new ConcurrentHashMap<>();
+
+    //a submitted call: the future handed to the caller, completed only if it was not cancelled first
+    private static class Pending<T> {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+
+        //never interrupts; a call that has started runs to the end and its result is discarded
+        void cancel() {
+            result.cancel(false);
+        }
+    }
+
+    public AsyncDatabase(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    // Runs the call on a virtual thread and completes the returned future on the callback executor.
+    public <T> CompletableFuture<T> submit(Call<T> call) {
+        Pending<T> pending = new Pending<>();
+        start(pending, call, null);
+        return pending.result;
+    }
+
+    // Like submit, but first cancels the call still pending on the same channel.
+    public <T> CompletableFuture<T> submitLatest(String channel, Call<T> call) {
+        Pending<T> pending = new Pending<>();
+        Pending<?> previous = channels.put(channel, pending);
+        if (previous != null) {
+            previous.cancel();
+        }
+        start(pending, call, channel);
+        return pending.result;
+    }
+
+    // Cancels the call pending on a channel, if any.
+    public void cancel(String channel) {
+        Pending<?> previous = channels.remove(channel);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    // Cancels every pending channel call, e.g. when leaving the page.
+    public void cancelAll() {
+        for (String channel : channels.keySet()) {
+            cancel(channel);
+        }
+    }
+
+    private <T> void start(Pending<T> pending, Call<T> call, String channel) {
+        VIRTUAL_THREADS.execute(() -> {
+            if (pending.result.isDone()) {
+                return; //cancelled before it started
+            }
+            try {
+                T value = call.call();
+                callbackExecutor.execute(() -> {
+                    //does nothing if the call was cancelled meanwhile, so a superseded result is dropped
+                    pending.result.complete(value);
+                    finished(channel, pending);
+                });
+            } catch (Throwable e) {
+                callbackExecutor.execute(() -> {
+                    pending.result.completeExceptionally(e);
+                    finished(channel, pending);
+                });
+            }
+        });
+    }
+
+    //forget the channel entry unless a newer call has already replaced it
+    private void finished(String channel, Pending<?> pending) {
+        if (channel != null) {
+            channels.remove(channel, pending);
+        }
+    }
+
+    /**
+     * Attaches success and error callbacks to a future from this class. Cancellation is not an
+     * error, so neither callback runs for a superseded call; errors are unwrapped first.
+     */
+    public static <T> void whenDone(CompletableFuture<T> future, Consumer<T> onSuccess, Consumer<Throwable> onError) {
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                onSuccess.accept(value);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (!(cause instanceof CancellationException)) {
+                onError.accept(cause);
+            }
+        });
+    }
+}
@@ -0,0 +1,58 @@
+package databasePart1;
+
+import java.nio.file.Path;
+
+/**
+ * The BackupReport class describes one snapshot taken by BackupService: where it went, how large
+ * it is, how long it took, and how long writers were held up while it was taken, measured by
+ * timing small probe writes that ran throughout the snapshot.
+ */
+public class BackupReport {
+    private final Path file;
+    private final long bytes;
+    private final long elapsedNanos;
+    private final long maxWriterStallNanos;
+    private final int probeWrites;
+    private final int deletedBackups;
+
+    public BackupReport(Path file, long bytes, long elapsedNanos, long maxWriterStallNanos, int probeWrites,
+                        int deletedBackups) {
+        this.file = file;
+        this.bytes = bytes;
+        this.elapsedNanos = elapsedNanos;
+        this.maxWriterStallNanos = maxWriterStallNanos;
+        this.probeWrites = probeWrites;
+        this.deletedBackups = deletedBackups;
+    }
+
+    // the compressed snapshot
+    public Path getFile() {
+        return file;
+    }
+    public long getBytes() {
+        return bytes;
+    }
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+    // longest a single probe write waited while the snapshot ran; about the cost of one
+    // write if writers were never blocked, about the snapshot time if they were blocked throughout
+    public double getMaxWriterStallMillis() {
+        return maxWriterStallNanos / 1_000_000.0;
+    }
+    // probe writes that completed during the snapshot; 0 means there was no measurement
+    public int getProbeWrites() {
+        return probeWrites;
+    }
+    // older snapshots removed by rotation afterwards
+    public int getDeletedBackups() {
+        return deletedBackups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BackupReport{file=%s, bytes=%d, elapsed=%.3fms, maxWriterStall=%.3fms, "
+                + "probeWrites=%d, deleted=%d}", file, bytes, getElapsedMillis(), getMaxWriterStallMillis(),
+                probeWrites, deletedBackups);
+    }
+}
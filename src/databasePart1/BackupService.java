@@ -0,0 +1,238 @@
+package databasePart1;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BackupService class takes consistent snapshots of the database while the application keeps
+ * running. A file database is copied with H2's BACKUP TO into a zip archive, which reads a consistent
+ * version of the store while writes go on; an in-memory database is dumped with SCRIPT TO as gzipped
+ * SQL. Snapshots are taken on a fixed schedule on a background thread, or on demand by an admin, and
+ * only the newest few are kept.
+ *
+ * While a snapshot runs, a probe keeps updating a single row of backup_probe and times each write;
+ * the longest of those waits is reported as how long the snapshot held writers up.
+ *
+ * H2 writes the snapshot in the process that has the database open, and this class then renames and
+ * rotates it on the local disk, so it only works where that process is this one: an in-memory or
+ * embedded database. Boards reached over TCP, including an AUTO_SERVER file that another client may
+ * be serving, are backed up on the machine that serves them.
+ */
+public final class BackupService implements AutoCloseable {
+    public static final int DEFAULT_KEEP = 7;
+    public static final long DEFAULT_INTERVAL_HOURS = 24;
+
+    //snapshot files are named board-<timestamp>.zip or .sql.gz, so names sort oldest first
+    private static final String PREFIX = "board-";
+    private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    //pause between probe writes
+    private static final long PROBE_PAUSE_MILLIS = 5;
+
+    private final ConnectionPool pool;
+    private final Path directory;
+    private final int keep;
+    private final PeriodicTask task;
+
+    //metrics
+    private final AtomicLong backupCount = new AtomicLong();
+    private final AtomicLong maxWriterStallNanos = new AtomicLong();
+    private volatile BackupReport lastReport;
+
+    public BackupService(ConnectionPool pool, Path directory) {
+        this(pool, directory, DEFAULT_KEEP, DEFAULT_INTERVAL_HOURS, TimeUnit.HOURS);
+    }
+
+    public BackupService(ConnectionPool pool, Path directory, int keep, long interval, TimeUnit unit) {
+        if (keep < 1 || interval < 1) {
+            throw new IllegalArgumentException("Backups kept and interval must be at least 1");
+        }
+        if (!isLocal(pool.getUrl())) {
+            throw new IllegalArgumentException("Online backups need a database opened by this process, not " + pool.getUrl());
+        }
+        this.pool = pool;
+        this.directory = directory.toAbsolutePath();
+        this.keep = keep;
+        //count the interval from the newest snapshot, so restarting the application neither
+        //takes an extra snapshot nor postpones a due one
+        long intervalMillis = unit.toMillis(interval);
+        this.task = new PeriodicTask("database-backup", "Database backup", this::backup,
+                initialDelayMillis(intervalMillis), intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a snapshot now, deletes all but the newest kept ones and reports on it. Calls are
+     * serialized, so an admin request made during a scheduled snapshot waits for it.
+     */
+    public synchronized BackupReport backup() throws SQLException, IOException {
+        Files.createDirectories(directory);
+        String stamp = LocalDateTime.now().format(STAMP);
+        long start = System.nanoTime();
+        WriterProbe probe = new WriterProbe();
+        Path target;
+        Path partial;
+        try (Connection connection = pool.getConnection()) {
+            boolean inMemory = connection.getMetaData().getURL().startsWith("jdbc:h2:mem:");
+            target = directory.resolve(PREFIX + stamp + (inMemory ? ".sql.gz" : ".zip"));
+            //written under a temporary name, so rotation and restores never see a partial snapshot
+            partial = directory.resolve(target.getFileName() + ".part");
+            String literal = "'" + partial.toString().replace("'", "''") + "'";
+            probe.start();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(inMemory ? "SCRIPT TO " + literal + " COMPRESSION GZIP" : "BACKUP TO " + literal);
+            } catch (SQLException e) {
+                Files.deleteIfExists(partial);
+                throw e;
+            } finally {
+                probe.stop();
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE);
+        BackupReport report = new BackupReport(target, Files.size(target), elapsed, probe.maxNanos,
+                probe.writes, rotate());
+        backupCount.incrementAndGet();
+        maxWriterStallNanos.accumulateAndGet(probe.maxNanos, Math::max);
+        lastReport = report;
+        return report;
+    }
+
+    // Returns the snapshots in the backup directory, oldest first.
+    public List<Path> listBackups() throws IOException {
+        List<Path> backups = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return backups;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*.{zip,sql.gz}")) {
+            for (Path file : files) {
+                backups.add(file);
+            }
+        }
+        Collections.sort(backups);
+        return backups;
+    }
+
+    //delete all but the newest snapshots, returning how many were deleted
+    private int rotate() throws IOException {
+        List<Path> backups = listBackups();
+        int deleted = 0;
+        for (int i = 0; i < backups.size() - keep; i++) {
+            if (Files.deleteIfExists(backups.get(i))) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    // True if a database URL is opened inside this process, so H2 writes snapshots to this machine's disk.
+    public static boolean isLocal(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        return lower.startsWith("jdbc:h2:") && !lower.startsWith("jdbc:h2:tcp:") && !lower.startsWith("jdbc:h2:ssl:")
+                && !lower.replace(" ", "").contains(";auto_server=true");
+    }
+
+    //time until the newest snapshot is an interval old, 0 if there is none
+    private long initialDelayMillis(long intervalMillis) {
+        try {
+            List<Path> backups = listBackups();
+            if (backups.isEmpty()) {
+                return 0;
+            }
+            Instant newest = Files.getLastModifiedTime(backups.get(backups.size() - 1)).toInstant();
+            long age = Duration.between(newest, Instant.now()).toMillis();
+            return Math.max(0, intervalMillis - age);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    @Override
+    public void close() {
+        task.close();
+    }
+
+    //metrics
+    public long getBackupCount() {
+        return backupCount.get();
+    }
+    // scheduled snapshots that failed
+    public long getFailureCount() {
+        return task.getFailureCount();
+    }
+    // longest writer stall seen in any snapshot so far
+    public double getMaxWriterStallMillis() {
+        return maxWriterStallNanos.get() / 1_000_000.0;
+    }
+    // the most recent successful snapshot, or null if none was taken yet
+    public BackupReport getLastReport() {
+        return lastReport;
+    }
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BackupService{directory=%s, keep=%d, backups=%d, failures=%d, maxWriterStall=%.3fms}",
+                directory, keep, getBackupCount(), getFailureCount(), getMaxWriterStallMillis());
+    }
+
+    //updates the probe row on its own connection until stopped, timing each write
+    private final class WriterProbe implements Runnable {
+        private volatile boolean running = true;
+        private Thread thread;
+        //written by the probe thread, read after join
+        private long maxNanos;
+        private int writes;
+
+        void start() {
+            thread = Thread.ofVirtual().name("backup-writer-probe").start(this);
+        }
+
+        void stop() {
+            running = false;
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement update = pool.prepare(connection, "backupProbe",
+                        "UPDATE backup_probe SET probedAt = ? WHERE id = 1");
+                while (running) {
+                    long start = System.nanoTime();
+                    update.setTimestamp(1, new Timestamp(System.currentTimeMillis()));
+                    update.executeUpdate();
+                    maxNanos = Math.max(maxNanos, System.nanoTime() - start);
+                    writes++;
+                    Thread.sleep(PROBE_PAUSE_MILLIS);
+                }
+            } catch (SQLException e) {
+                System.err.println("Backup writer probe failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
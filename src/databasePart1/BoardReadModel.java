@@ -0,0 +1,616 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import application.Answer;
+import application.Answers;
+import application.ChangeSet;
+import application.Question;
+import application.QuestionPage;
+import application.QuestionSummary;
+import application.QuestionSummaryPage;
+import application.QuestionWithAnswers;
+
+/**
+ * The BoardReadModel class keeps every question and answer on the board in memory, indexed by id,
+ * author, category and answered status, with answers grouped by question, so the board's list,
+ * filter and detail reads never touch JDBC. It is built once per connection pool from
+ * DiscussionBoardDAO and is the pool's change listener: every DiscussionBoardDAO on the pool hands
+ * it the rows each transaction wrote, on the writing thread right after the commit and in commit
+ * order, so a write is in the model by the time the call that made it returns, without reading
+ * anything back. Writes by other processes sharing the database are picked up by catchUp, which
+ * reloads just the questions that new change log entries name.
+ *
+ * Keyword searches and queries that include the archive are passed on to the DAO, since the
+ * full-text index and the archive live only in the database. Everything handed out is a copy.
+ */
+public final class BoardReadModel {
+    //change log entries applied per round while catching up
+    private static final int CATCH_UP_BATCH = 1000;
+    //accepted first, then oldest first, as DiscussionBoardDAO returns them
+    private static final Comparator<Answer> ANSWER_ORDER = Comparator.comparing(Answer::getIsAccepted).reversed()
+            .thenComparing(Answer::getCreatedAt).thenComparingInt(Answer::getAnswerId);
+
+    //one model per pool, built by the first caller while later ones wait for it
+    private static final Map<ConnectionPool, CompletableFuture<BoardReadModel>> models = new ConcurrentHashMap<>();
+
+    private final DiscussionBoardDAO dao;
+    //readers share the indexes, committed changes and catch-ups replace entries under the write lock
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //only one catch-up or rebuild at a time, so each applies a newer state than the last
+    private final Object catchUpLock = new Object();
+    //applies committed changes to the indexes
+    private final ChangeApplier applier = new ChangeApplier();
+    //changes committed while a rebuild reads the board, applied on top of what it read; null when not
+    //rebuilding. Guarded by lock
+    private List<CommittedChanges> changesDuringRebuild;
+
+    //indexes, guarded by lock
+    private final Map<Integer, Question> questions = new HashMap<>();
+    private final Map<Integer, List<Answer>> answersByQuestion = new HashMap<>();
+    private final NavigableSet<Key> newestFirst = new TreeSet<>();
+    private final Map<String, NavigableSet<Key>> byAuthor = new HashMap<>();
+    private final Map<String, NavigableSet<Key>> byCategory = new HashMap<>();
+    private final Map<Boolean, NavigableSet<Key>> byAnswered = new HashMap<>();
+    private int answerCount;
+
+    //change log position the model reflects, guarded by catchUpLock
+    private long lastSeq;
+
+    //metrics
+    private final AtomicLong rebuildCount = new AtomicLong();
+    private final AtomicLong appliedCount = new AtomicLong();
+    private final AtomicLong catchUpCount = new AtomicLong();
+    private final AtomicLong reloadedCount = new AtomicLong();
+    private final AtomicLong lastCatchUpNanos = new AtomicLong();
+
+    private BoardReadModel(DiscussionBoardDAO dao) {
+        this.dao = dao;
+    }
+
+    // Returns the model of the board behind the pool, loading it from the database on first use, so
+    // call it off the UI thread. Callers for other pools are not held up by the load.
+    public static BoardReadModel forPool(ConnectionPool pool) throws SQLException {
+        CompletableFuture<BoardReadModel> future = models.get(pool);
+        if (future == null) {
+            CompletableFuture<BoardReadModel> building = new CompletableFuture<>();
+            future = models.putIfAbsent(pool, building);
+            if (future == null) {
+                future = building;
+                build(pool, building);
+            }
+        }
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException) {
+                throw new SQLException(e.getCause().getMessage(), e.getCause());
+            }
+            throw e;
+        }
+    }
+
+    //load the pool's model into the future; a failed load is forgotten, so the next caller tries again
+    private static void build(ConnectionPool pool, CompletableFuture<BoardReadModel> building) {
+        try {
+            BoardReadModel model = new BoardReadModel(new DiscussionBoardDAO(pool));
+            //listening first, so every commit is either in what rebuild reads or reported to the model
+            DiscussionBoardDAO.setChangeListener(pool, model::changesCommitted);
+            try {
+                model.rebuild();
+            } catch (SQLException | RuntimeException e) {
+                DiscussionBoardDAO.setChangeListener(pool, null);
+                throw e;
+            }
+            building.complete(model);
+        } catch (SQLException | RuntimeException e) {
+            models.remove(pool, building);
+            building.completeExceptionally(e);
+        }
+    }
+
+    // Returns the model of the application's board.
+    public static BoardReadModel getShared() throws SQLException {
+        return forPool(ConnectionPool.getShared());
+    }
+
+    //the DiscussionBoardDAO.ChangeListener of the model's pool: applies what a transaction wrote, on the
+    //writing thread; while a rebuild reads the board they are kept until it is done
+    private void changesCommitted(CommittedChanges changes) {
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(changes);
+            } else {
+                changes.replay(applier);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        appliedCount.addAndGet(changes.size());
+    }
+
+    //READS
+
+    // The newest-first page after the cursor, like DiscussionBoardDAO.findQuestionSummaries.
+    public QuestionSummaryPage findQuestionSummaries(QuestionQuery query, QuestionPage.Cursor after) throws SQLException {
+        if (!covers(query)) {
+            return dao.findQuestionSummaries(query, after);
+        }
+        List<QuestionSummary> summaries = new ArrayList<>();
+        boolean hasMore;
+        lock.readLock().lock();
+        try {
+            List<Question> page = match(query, after);
+            hasMore = page.size() > query.getLimit();
+            for (Question q : page.subList(0, Math.min(page.size(), query.getLimit()))) {
+                summaries.add(new QuestionSummary(q.getQuestionId(), q.getTitle(), q.getAuthorUserName(),
+                        q.getCreatedAt(), q.getIsAnswered(), q.getCategory(), q.getAnswerCount(),
+                        q.getAcceptedAnswerId()));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new QuestionSummaryPage(summaries, hasMore);
+    }
+
+    // The newest-first page after the cursor with full questions, like DiscussionBoardDAO.findQuestions.
+    public QuestionPage findQuestions(QuestionQuery query, QuestionPage.Cursor after) throws SQLException {
+        if (!covers(query)) {
+            return dao.findQuestions(query, after);
+        }
+        List<Question> questions = new ArrayList<>();
+        boolean hasMore;
+        lock.readLock().lock();
+        try {
+            List<Question> page = match(query, after);
+            hasMore = page.size() > query.getLimit();
+            for (Question q : page.subList(0, Math.min(page.size(), query.getLimit()))) {
+                questions.add(copy(q));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new QuestionPage(questions, hasMore);
+    }
+
+    // A question on the board, or null if there is none with that id.
+    public Question getQuestionById(int questionId) {
+        lock.readLock().lock();
+        try {
+            Question q = questions.get(questionId);
+            return q == null ? null : copy(q);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // A question with its answers; questions not on the board are looked up in the archive.
+    public QuestionWithAnswers getQuestionWithAnswers(int questionId) throws SQLException {
+        lock.readLock().lock();
+        try {
+            Question q = questions.get(questionId);
+            if (q != null) {
+                return new QuestionWithAnswers(copy(q), copyAnswers(questionId));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return dao.getQuestionWithAnswers(questionId);
+    }
+
+    // The answers to a question on the board, accepted first then oldest first.
+    public Answers getAnswersForQuestion(int questionId) {
+        lock.readLock().lock();
+        try {
+            return copyAnswers(questionId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // true if the query is answered from memory; keyword and archive queries go to the database
+    public boolean covers(QuestionQuery query) {
+        return query.getKeyword() == null && !query.getIncludeArchived();
+    }
+
+    //questions matching the query after the cursor, newest first, one more than the limit if there are
+    //that many. Walks the smallest index that applies and checks the other criteria on each question
+    private List<Question> match(QuestionQuery query, QuestionPage.Cursor after) {
+        NavigableSet<Key> index = newestFirst;
+        if (query.getAuthorUserName() != null) {
+            index = smaller(index, byAuthor.get(query.getAuthorUserName()));
+        }
+        if (query.getCategory() != null) {
+            index = smaller(index, byCategory.get(query.getCategory()));
+        }
+        if (query.getAnswered() != null) {
+            index = smaller(index, byAnswered.get(query.getAnswered()));
+        }
+        if (index == null) {
+            return new ArrayList<>();
+        }
+        Iterable<Key> keys = after == null ? index
+                : index.tailSet(new Key(after.getCreatedAt(), after.getQuestionId()), false);
+        List<Question> matches = new ArrayList<>();
+        for (Key key : keys) {
+            Question q = questions.get(key.questionId);
+            if ((query.getAnswered() == null || q.getIsAnswered() == query.getAnswered())
+                    && (query.getAuthorUserName() == null || query.getAuthorUserName().equals(q.getAuthorUserName()))
+                    && (query.getCategory() == null || query.getCategory().equals(q.getCategory()))) {
+                matches.add(q);
+                if (matches.size() > query.getLimit()) {
+                    break;
+                }
+            }
+        }
+        return matches;
+    }
+
+    //the smaller of two index entries; null, a value no question has, matches nothing
+    private static NavigableSet<Key> smaller(NavigableSet<Key> a, NavigableSet<Key> b) {
+        if (a == null || b == null) {
+            return null;
+        }
+        return b.size() < a.size() ? b : a;
+    }
+
+    //UPDATES
+
+    /**
+     * Applies every change logged since the model was last brought up to date, reloading the
+     * questions they touch. Writes made through this process's DAOs are already applied; call it
+     * to pick up writes made by other processes sharing the database.
+     */
+    public void catchUp() throws SQLException {
+        synchronized (catchUpLock) {
+            long start = System.nanoTime();
+            boolean resyncRequired = false;
+            boolean hasMore = true;
+            while (hasMore && !resyncRequired) {
+                //read and applied with commits held, so a reloaded row never replaces a newer committed change
+                ChangeSet changes = dao.whileCommitsHeld(connection -> {
+                    ChangeSet batch = dao.changesSince(connection, lastSeq, CATCH_UP_BATCH);
+                    if (!batch.isResyncRequired() && !batch.isEmpty()) {
+                        reload(connection, batch.getQuestionIds());
+                        lastSeq = batch.getLastSeq();
+                    }
+                    return batch;
+                });
+                resyncRequired = changes.isResyncRequired();
+                hasMore = changes.hasMore();
+            }
+            if (resyncRequired) {
+                //entries this model has not seen were pruned, so start over
+                rebuild();
+            }
+            catchUpCount.incrementAndGet();
+            lastCatchUpNanos.set(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Reloads the whole board from the database. Writes keep committing while it reads; their
+     * changes are held back and applied on top of what was read, in commit order.
+     */
+    public void rebuild() throws SQLException {
+        synchronized (catchUpLock) {
+            lock.writeLock().lock();
+            try {
+                changesDuringRebuild = new ArrayList<>();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            long seq;
+            List<Question> loadedQuestions = new ArrayList<>();
+            List<Answer> loadedAnswers = new ArrayList<>();
+            try {
+                seq = dao.getLatestChangeSeq();
+                try (Stream<Question> rows = dao.streamQuestions()) {
+                    rows.forEach(loadedQuestions::add);
+                }
+                try (Stream<Answer> rows = dao.streamAnswers()) {
+                    rows.forEach(loadedAnswers::add);
+                }
+            } catch (SQLException | RuntimeException e) {
+                //keep what the model had and go back to applying changes to it
+                lock.writeLock().lock();
+                try {
+                    for (CommittedChanges changes : changesDuringRebuild) {
+                        changes.replay(applier);
+                    }
+                    changesDuringRebuild = null;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                throw e;
+            }
+            lock.writeLock().lock();
+            try {
+                questions.clear();
+                answersByQuestion.clear();
+                newestFirst.clear();
+                byAuthor.clear();
+                byCategory.clear();
+                byAnswered.clear();
+                answerCount = 0;
+                for (Question q : loadedQuestions) {
+                    put(q, new ArrayList<>());
+                }
+                for (Answer a : loadedAnswers) {
+                    List<Answer> answers = answersByQuestion.get(a.getQuestionId());
+                    if (answers != null) {
+                        answers.add(a);
+                        answerCount++;
+                    }
+                }
+                for (List<Answer> answers : answersByQuestion.values()) {
+                    answers.sort(ANSWER_ORDER);
+                }
+                //rows read may already include some of these; applying a change again leaves the same state
+                for (CommittedChanges changes : changesDuringRebuild) {
+                    changes.replay(applier);
+                }
+                changesDuringRebuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            lastSeq = seq;
+            rebuildCount.incrementAndGet();
+        }
+    }
+
+    //replace the given questions with their current rows; ones no longer on the board are dropped
+    private void reload(Connection connection, Collection<Integer> questionIds) throws SQLException {
+        List<QuestionWithAnswers> current = dao.getQuestionsWithAnswers(connection, questionIds);
+        lock.writeLock().lock();
+        try {
+            for (int questionId : questionIds) {
+                remove(questionId);
+            }
+            for (QuestionWithAnswers qa : current) {
+                List<Answer> answers = qa.getAnswers().getAllAnswers();
+                answers.sort(ANSWER_ORDER);
+                put(qa.getQuestion(), answers);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        reloadedCount.addAndGet(questionIds.size());
+    }
+
+    //add a question and its sorted answers to every index; callers hold the write lock
+    private void put(Question q, List<Answer> answers) {
+        Key key = new Key(q.getCreatedAt(), q.getQuestionId());
+        questions.put(q.getQuestionId(), q);
+        answersByQuestion.put(q.getQuestionId(), answers);
+        answerCount += answers.size();
+        newestFirst.add(key);
+        byAuthor.computeIfAbsent(q.getAuthorUserName(), k -> new TreeSet<>()).add(key);
+        if (q.getCategory() != null) {
+            byCategory.computeIfAbsent(q.getCategory(), k -> new TreeSet<>()).add(key);
+        }
+        byAnswered.computeIfAbsent(q.getIsAnswered(), k -> new TreeSet<>()).add(key);
+    }
+
+    //drop a question and its answers from every index; callers hold the write lock
+    private void remove(int questionId) {
+        Question q = questions.remove(questionId);
+        if (q == null) {
+            return;
+        }
+        answerCount -= answersByQuestion.remove(questionId).size();
+        Key key = new Key(q.getCreatedAt(), questionId);
+        newestFirst.remove(key);
+        removeKey(byAuthor, q.getAuthorUserName(), key);
+        if (q.getCategory() != null) {
+            removeKey(byCategory, q.getCategory(), key);
+        }
+        removeKey(byAnswered, q.getIsAnswered(), key);
+    }
+
+    //applies committed rows to the indexes; callers hold the write lock. Applying a change to a state
+    //that already has it changes nothing, so changes held back during a rebuild can be applied on top
+    private final class ChangeApplier implements CommittedChanges.Visitor {
+        @Override
+        public void questionWritten(Question written) {
+            Question q = copy(written);
+            Question current = questions.get(q.getQuestionId());
+            List<Answer> answers = new ArrayList<>();
+            if (current != null) {
+                //the answer columns and createdAt are not changed by a question write
+                q.setCreatedAt(current.getCreatedAt());
+                q.setAnswerCount(current.getAnswerCount());
+                q.setAcceptedAnswerId(current.getAcceptedAnswerId());
+                answers = answersByQuestion.get(q.getQuestionId());
+                remove(q.getQuestionId());
+            }
+            put(q, answers);
+        }
+
+        @Override
+        public void questionRemoved(int questionId) {
+            remove(questionId);
+        }
+
+        @Override
+        public void answerWritten(Answer written) {
+            Question q = questions.get(written.getQuestionId());
+            if (q == null) {
+                return;
+            }
+            Answer a = copy(written);
+            List<Answer> answers = answersByQuestion.get(q.getQuestionId());
+            int i = indexOf(answers, a.getAnswerId());
+            if (i >= 0) {
+                a.setCreatedAt(answers.get(i).getCreatedAt());
+                answers.set(i, a);
+            } else {
+                answers.add(a);
+                answerCount++;
+            }
+            answers.sort(ANSWER_ORDER);
+            q.setAnswerCount(answers.size());
+            //as DiscussionBoardDAO keeps acceptedAnswerId: accepting points at the answer, un-accepting clears
+            //it if it pointed there
+            if (a.getIsAccepted()) {
+                q.setAcceptedAnswerId(a.getAnswerId());
+            } else if (Objects.equals(q.getAcceptedAnswerId(), a.getAnswerId())) {
+                q.setAcceptedAnswerId(null);
+            }
+        }
+
+        @Override
+        public void answerDeleted(int answerId, int questionId) {
+            Question q = questions.get(questionId);
+            if (q == null) {
+                return;
+            }
+            List<Answer> answers = answersByQuestion.get(questionId);
+            int i = indexOf(answers, answerId);
+            if (i >= 0) {
+                answers.remove(i);
+                answerCount--;
+            }
+            q.setAnswerCount(answers.size());
+            if (Objects.equals(q.getAcceptedAnswerId(), answerId)) {
+                q.setAcceptedAnswerId(null);
+            }
+        }
+
+        private int indexOf(List<Answer> answers, int answerId) {
+            for (int i = 0; i < answers.size(); i++) {
+                if (answers.get(i).getAnswerId() == answerId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    //empty entries are removed, so an index only holds values some question has
+    private static <K> void removeKey(Map<K, NavigableSet<Key>> index, K value, Key key) {
+        NavigableSet<Key> keys = index.get(value);
+        if (keys != null && keys.remove(key) && keys.isEmpty()) {
+            index.remove(value);
+        }
+    }
+
+    private Answers copyAnswers(int questionId) {
+        Answers copies = new Answers();
+        for (Answer a : answersByQuestion.getOrDefault(questionId, new ArrayList<>())) {
+            copies.addAnswer(copy(a));
+        }
+        return copies;
+    }
+
+    static Answer copy(Answer a) {
+        Answer copy = new Answer(a.getAnswerId(), a.getQuestionId(), a.getContent(), a.getAuthorUserName(),
+                a.getCreatedAt(), a.getUpdatedAt(), a.getIsAccepted());
+        copy.setVersion(a.getVersion());
+        return copy;
+    }
+
+    static Question copy(Question q) {
+        Question copy = new Question(q.getTitle(), q.getContent(), q.getAuthorUserName());
+        copy.setQuestionId(q.getQuestionId());
+        copy.setIsAnswered(q.getIsAnswered());
+        copy.setCategory(q.getCategory());
+        copy.setAnswerCount(q.getAnswerCount());
+        copy.setAcceptedAnswerId(q.getAcceptedAnswerId());
+        copy.setVersion(q.getVersion());
+        copy.setCreatedAt(q.getCreatedAt());
+        copy.setUpdatedAt(q.getUpdatedAt());
+        return copy;
+    }
+
+    //metrics
+    public int getQuestionCount() {
+        lock.readLock().lock();
+        try {
+            return questions.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public int getAnswerCount() {
+        lock.readLock().lock();
+        try {
+            return answerCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    public long getLastSeq() {
+        synchronized (catchUpLock) {
+            return lastSeq;
+        }
+    }
+    public long getRebuildCount() {
+        return rebuildCount.get();
+    }
+    public long getCatchUpCount() {
+        return catchUpCount.get();
+    }
+    // rows written by this process's transactions and applied, or held back during a rebuild
+    public long getAppliedCount() {
+        return appliedCount.get();
+    }
+    // questions reloaded by catch-ups, counting repeats
+    public long getReloadedCount() {
+        return reloadedCount.get();
+    }
+    public double getLastCatchUpMillis() {
+        return lastCatchUpNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("BoardReadModel{questions=%d, answers=%d, rebuilds=%d, applied=%d, catchUps=%d, "
+                + "reloaded=%d, lastCatchUp=%.3fms}", getQuestionCount(), getAnswerCount(), getRebuildCount(),
+                getAppliedCount(), getCatchUpCount(), getReloadedCount(), getLastCatchUpMillis());
+    }
+
+    //position in the (createdAt DESC, questionId DESC) listing order
+    private static final class Key implements Comparable<Key> {
+        final LocalDateTime createdAt;
+        final int questionId;
+
+        Key(LocalDateTime createdAt, int questionId) {
+            this.createdAt = createdAt;
+            this.questionId = questionId;
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int byTime = other.createdAt.compareTo(createdAt);
+            return byTime != 0 ? byTime : Integer.compare(other.questionId, questionId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && ((Key) o).questionId == questionId && ((Key) o).createdAt.equals(createdAt);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(createdAt, questionId);
+        }
+    }
+}
@@ -0,0 +1,692 @@
+package databasePart1;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import application.Answer;
+import application.ChangeLogEntry.Entity;
+import application.ChangeLogEntry.Operation;
+import application.Question;
+
+/**
+ * The BoardTransfer class exports the whole discussion board, archive included, as text and imports
+ * it again, either as JSON Lines (one object per line) or as CSV with a header row. Export reads
+ * every table through a forward-only result set inside one snapshot and writes each row as it
+ * arrives; import parses one record at a time and inserts through batched prepared statements, one
+ * transaction per batch. Neither holds more than a batch of rows, so heap use stays flat however
+ * large the board is.
+ *
+ * Questions are written before the answers that reference them and ids are kept, so import into a
+ * board whose ids do not overlap the file's, such as an empty one. Rows with an archivedAt go back
+ * to the archive tables; the rest go to the board and are logged as inserts in the change log.
+ */
+public class BoardTransfer {
+    public enum Format { JSONL, CSV }
+
+    //rows between progress reports
+    public static final long REPORT_INTERVAL = 100_000;
+
+    //told the running row count and rate every REPORT_INTERVAL rows
+    public interface Progress {
+        void rowsTransferred(long rows, double rowsPerSecond);
+    }
+
+    //CSV columns: the record type, then every question and answer column
+    private static final String[] CSV_COLUMNS = {"type", "questionId", "answerId", "title", "content",
+            "authorUserName", "createdAt", "updatedAt", "isAnswered", "isAccepted", "category", "answerCount",
+            "acceptedAnswerId", "version", "archivedAt"};
+    private static final List<String> INT_COLUMNS =
+            List.of("questionId", "answerId", "answerCount", "acceptedAnswerId", "version");
+    private static final List<String> BOOLEAN_COLUMNS = List.of("isAnswered", "isAccepted");
+    private static final List<String> TIMESTAMP_COLUMNS = List.of("createdAt", "updatedAt", "archivedAt");
+    //values for columns a record leaves out that the tables do not allow to be null
+    private static final Map<String, String> DEFAULTS =
+            Map.of("isAnswered", "false", "isAccepted", "false", "answerCount", "0", "version", "0");
+
+    //where each kind of record is read from and written to, in export order
+    private static final Table QUESTIONS = new Table("question", "questions", false, Entity.QUESTION);
+    private static final Table ARCHIVED_QUESTIONS = new Table("question", "archived_questions", true, null);
+    private static final Table ANSWERS = new Table("answer", "answers", false, Entity.ANSWER);
+    private static final Table ARCHIVED_ANSWERS = new Table("answer", "archived_answers", true, null);
+    private static final Table[] TABLES = {QUESTIONS, ARCHIVED_QUESTIONS, ANSWERS, ARCHIVED_ANSWERS};
+
+    private final DiscussionBoardDAO dao;
+    private final ConnectionPool pool;
+
+    public BoardTransfer(DiscussionBoardDAO dao) {
+        this.dao = dao;
+        this.pool = dao.getConnectionPool();
+    }
+
+    //EXPORT
+
+    // Writes the board to a UTF-8 file, replacing it.
+    public TransferReport export(Path file, Format format, Progress progress) throws IOException, SQLException {
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            return export(out, format, progress);
+        }
+    }
+
+    /**
+     * Writes every question and answer, archived ones included, to out. All four tables are read in
+     * one repeatable-read transaction, so the answer counts written match the answers written.
+     * The writer is flushed but not closed.
+     */
+    public TransferReport export(Writer out, Format format, Progress progress) throws IOException, SQLException {
+        Writer writer = out instanceof BufferedWriter ? out : new BufferedWriter(out, 1 << 16);
+        long start = System.nanoTime();
+        long[] counts = new long[2];
+        try (Connection connection = pool.getConnection()) {
+            int isolation = connection.getTransactionIsolation();
+            //stream rows off the index instead of building each result first
+            try (Statement settings = connection.createStatement()) {
+                settings.execute("SET LAZY_QUERY_EXECUTION TRUE");
+            }
+            connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+            connection.setAutoCommit(false);
+            try {
+                if (format == Format.CSV) {
+                    writeCsvRecord(writer, CSV_COLUMNS);
+                }
+                for (Table table : TABLES) {
+                    long rows = exportTable(connection, table, writer, format, start, counts, progress);
+                    counts[table.type.equals("question") ? 0 : 1] += rows;
+                }
+            } finally {
+                //read only, so there is nothing to commit
+                connection.rollback();
+                connection.setAutoCommit(true);
+                connection.setTransactionIsolation(isolation);
+                try (Statement settings = connection.createStatement()) {
+                    settings.execute("SET LAZY_QUERY_EXECUTION FALSE");
+                }
+            }
+        }
+        writer.flush();
+        return new TransferReport(counts[0], counts[1], System.nanoTime() - start);
+    }
+
+    //write one table's rows in id order, returning how many were written
+    private long exportTable(Connection connection, Table table, Writer writer, Format format, long start,
+                             long[] counts, Progress progress) throws IOException, SQLException {
+        String sql = "SELECT " + String.join(", ", table.columns) + " FROM " + table.name
+                + " ORDER BY " + table.columns[0];
+        String[] values = new String[table.columns.length];
+        String[] csvRecord = new String[CSV_COLUMNS.length];
+        StringBuilder line = new StringBuilder(256);
+        long rows = 0;
+        try (PreparedStatement pstmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY)) {
+            pstmt.setFetchSize(dao.getFetchSize());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = readColumn(rs, i + 1, table.columns[i]);
+                    }
+                    if (format == Format.CSV) {
+                        Arrays.fill(csvRecord, null);
+                        csvRecord[0] = table.type;
+                        for (int i = 0; i < values.length; i++) {
+                            csvRecord[table.csvPositions[i]] = values[i];
+                        }
+                        writeCsvRecord(writer, csvRecord);
+                    } else {
+                        writeJsonLine(writer, line, table, values);
+                    }
+                    rows++;
+                    long total = counts[0] + counts[1] + rows;
+                    if (progress != null && total % REPORT_INTERVAL == 0) {
+                        progress.rowsTransferred(total, TransferReport.rowsPerSecond(total, System.nanoTime() - start));
+                    }
+                }
+            }
+        }
+        return rows;
+    }
+
+    //a column's value as text: numbers and booleans as literals, timestamps in ISO-8601
+    private static String readColumn(ResultSet rs, int index, String column) throws SQLException {
+        if (TIMESTAMP_COLUMNS.contains(column)) {
+            Timestamp value = rs.getTimestamp(index);
+            return value == null ? null : value.toLocalDateTime().toString();
+        }
+        if (BOOLEAN_COLUMNS.contains(column)) {
+            boolean value = rs.getBoolean(index);
+            return rs.wasNull() ? null : String.valueOf(value);
+        }
+        return rs.getString(index);
+    }
+
+    private static void writeJsonLine(Writer writer, StringBuilder line, Table table, String[] values)
+            throws IOException {
+        line.setLength(0);
+        line.append("{\"type\":\"").append(table.type).append('"');
+        for (int i = 0; i < values.length; i++) {
+            String column = table.columns[i];
+            line.append(",\"").append(column).append("\":");
+            if (values[i] == null) {
+                line.append("null");
+            } else if (INT_COLUMNS.contains(column) || BOOLEAN_COLUMNS.contains(column)) {
+                line.append(values[i]);
+            } else {
+                appendJsonString(line, values[i]);
+            }
+        }
+        line.append("}\n");
+        writer.append(line);
+    }
+
+    private static void appendJsonString(StringBuilder out, String value) {
+        out.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"': out.append("\\\""); break;
+                case '\\': out.append("\\\\"); break;
+                case '\n': out.append("\\n"); break;
+                case '\r': out.append("\\r"); break;
+                case '\t': out.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    //RFC 4180: quote fields with separators, quotes or line breaks; null is an empty field and the
+    //empty string a quoted one, so the two survive a round trip
+    private static void writeCsvRecord(Writer writer, String[] fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field == null) {
+                continue;
+            }
+            if (field.isEmpty() || field.indexOf(',') >= 0 || field.indexOf('"') >= 0
+                    || field.indexOf('\n') >= 0 || field.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(field);
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    //IMPORT
+
+    // Reads a UTF-8 file written by export.
+    public TransferReport importFrom(Path file, Format format, Progress progress) throws IOException, SQLException {
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importFrom(in, format, progress);
+        }
+    }
+
+    /**
+     * Inserts every record read from in, batchSize rows per transaction (see
+     * DiscussionBoardDAO.setBatchSize). A batch only holds rows for one table, so answers must come
+     * after their question, as they do in an export. A malformed record stops the import with an
+     * IOException naming its record number; batches before it stay committed. The reader is not closed.
+     */
+    public TransferReport importFrom(Reader in, Format format, Progress progress) throws IOException, SQLException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        RecordReader records = format == Format.CSV ? new CsvRecordReader(reader) : new JsonRecordReader(reader);
+        int batchSize = dao.getBatchSize();
+        long start = System.nanoTime();
+        long questions = 0;
+        long answers = 0;
+        Table current = null;
+        List<Object[]> pending = new ArrayList<>(batchSize);
+        try {
+            Map<String, String> record;
+            while ((record = records.next()) != null) {
+                Table table = tableFor(record, records.getRecordNumber());
+                if (table != current && !pending.isEmpty()) {
+                    insertBatch(current, pending);
+                }
+                current = table;
+                pending.add(toRow(table, record, records.getRecordNumber()));
+                if (table.type.equals("question")) {
+                    questions++;
+                } else {
+                    answers++;
+                }
+                if (pending.size() == batchSize) {
+                    insertBatch(current, pending);
+                }
+                long total = questions + answers;
+                if (progress != null && total % REPORT_INTERVAL == 0) {
+                    progress.rowsTransferred(total, TransferReport.rowsPerSecond(total, System.nanoTime() - start));
+                }
+            }
+            if (!pending.isEmpty()) {
+                insertBatch(current, pending);
+            }
+        } finally {
+            //explicit ids do not move the id generators, so move them past what was imported
+            if (questions + answers > 0) {
+                restartIdentity("questions", "archived_questions", "questionId");
+                restartIdentity("answers", "archived_answers", "answerId");
+            }
+        }
+        return new TransferReport(questions, answers, System.nanoTime() - start);
+    }
+
+    private static Table tableFor(Map<String, String> record, long recordNumber) throws IOException {
+        String type = record.get("type");
+        boolean archived = record.get("archivedAt") != null;
+        if ("question".equals(type)) {
+            return archived ? ARCHIVED_QUESTIONS : QUESTIONS;
+        }
+        if ("answer".equals(type)) {
+            return archived ? ARCHIVED_ANSWERS : ANSWERS;
+        }
+        throw new IOException("Record " + recordNumber + ": unknown type " + type);
+    }
+
+    //a record's values converted to the table's column types, in column order
+    private static Object[] toRow(Table table, Map<String, String> record, long recordNumber) throws IOException {
+        Object[] row = new Object[table.columns.length];
+        for (int i = 0; i < row.length; i++) {
+            String column = table.columns[i];
+            String value = record.getOrDefault(column, DEFAULTS.get(column));
+            if (value == null) {
+                if (i == 0 || column.equals("questionId")) {
+                    throw new IOException("Record " + recordNumber + ": missing " + column);
+                }
+                continue;
+            }
+            try {
+                if (INT_COLUMNS.contains(column)) {
+                    row[i] = Integer.parseInt(value);
+                } else if (BOOLEAN_COLUMNS.contains(column)) {
+                    if (!value.equals("true") && !value.equals("false")) {
+                        throw new IllegalArgumentException("not a boolean: " + value);
+                    }
+                    row[i] = Boolean.valueOf(value);
+                } else if (TIMESTAMP_COLUMNS.contains(column)) {
+                    row[i] = Timestamp.valueOf(LocalDateTime.parse(value));
+                } else {
+                    row[i] = value;
+                }
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IOException("Record " + recordNumber + ": bad " + column + " (" + e.getMessage() + ")", e);
+            }
+        }
+        return row;
+    }
+
+    //insert the pending rows into one table in a single transaction, then clear them
+    private void insertBatch(Table table, List<Object[]> rows) throws SQLException {
+        dao.inTransaction(connection -> {
+            try (PreparedStatement insert = connection.prepareStatement(table.insertSql)) {
+                for (Object[] row : rows) {
+                    for (int i = 0; i < row.length; i++) {
+                        if (row[i] == null) {
+                            insert.setNull(i + 1, table.sqlTypes[i]);
+                        } else {
+                            insert.setObject(i + 1, row[i]);
+                        }
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            if (table.entity != null) {
+                List<Integer> ids = new ArrayList<>(rows.size());
+                List<Integer> questionIds = new ArrayList<>(rows.size());
+                int questionIdIndex = Arrays.asList(table.columns).indexOf("questionId");
+                for (Object[] row : rows) {
+                    ids.add((Integer) row[0]);
+                    questionIds.add((Integer) row[questionIdIndex]);
+                }
+                dao.logChanges(connection, table.entity, Operation.INSERT, ids, questionIds);
+                recordWritten(dao.written(connection), table, rows);
+            }
+            return null;
+        });
+        rows.clear();
+    }
+
+    //report board rows to the DAO's change listener as the questions and answers they are
+    private static void recordWritten(CommittedChanges written, Table table, List<Object[]> rows) {
+        for (Object[] row : rows) {
+            if (table.type.equals("question")) {
+                Question question = new Question((String) table.value(row, "title"), (String) table.value(row, "content"),
+                        (String) table.value(row, "authorUserName"));
+                question.setQuestionId((Integer) table.value(row, "questionId"));
+                question.setIsAnswered((Boolean) table.value(row, "isAnswered"));
+                question.setCategory((String) table.value(row, "category"));
+                question.setAnswerCount((Integer) table.value(row, "answerCount"));
+                question.setAcceptedAnswerId((Integer) table.value(row, "acceptedAnswerId"));
+                question.setVersion((Integer) table.value(row, "version"));
+                question.setCreatedAt(toLocalDateTime(table.value(row, "createdAt")));
+                question.setUpdatedAt(toLocalDateTime(table.value(row, "updatedAt")));
+                written.questionRestored(question);
+            } else {
+                Answer answer = new Answer((Integer) table.value(row, "answerId"), (Integer) table.value(row, "questionId"),
+                        (String) table.value(row, "content"), (String) table.value(row, "authorUserName"),
+                        toLocalDateTime(table.value(row, "createdAt")), toLocalDateTime(table.value(row, "updatedAt")),
+                        (Boolean) table.value(row, "isAccepted"));
+                answer.setVersion((Integer) table.value(row, "version"));
+                written.answerRestored(answer);
+            }
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(Object timestamp) {
+        return timestamp == null ? null : ((Timestamp) timestamp).toLocalDateTime();
+    }
+
+    //restart the board table's identity after the highest id in it and its archive, unless already past it
+    private void restartIdentity(String table, String archiveTable, String column) throws SQLException {
+        try (Connection connection = pool.getConnection();
+             Statement statement = connection.createStatement()) {
+            long next;
+            try (ResultSet rs = statement.executeQuery("SELECT GREATEST("
+                    + "COALESCE((SELECT MAX(" + column + ") FROM " + table + "), 0), "
+                    + "COALESCE((SELECT MAX(" + column + ") FROM " + archiveTable + "), 0)) + 1, "
+                    + "(SELECT IDENTITY_BASE FROM INFORMATION_SCHEMA.COLUMNS WHERE TABLE_SCHEMA = SCHEMA() "
+                    + "AND TABLE_NAME = '" + table.toUpperCase() + "' AND COLUMN_NAME = '" + column.toUpperCase() + "')")) {
+                rs.next();
+                next = rs.getLong(1);
+                if (next <= rs.getLong(2)) {
+                    return;
+                }
+            }
+            statement.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + next);
+        }
+    }
+
+    //helper types
+
+    //one table's columns, export type and insert statement
+    private static final class Table {
+        final String type;
+        final String name;
+        final String[] columns;
+        final int[] sqlTypes;
+        final int[] csvPositions;
+        final String insertSql;
+        //change log entity for board rows; archived rows are not on the board, so they are not logged
+        final Entity entity;
+
+        Table(String type, String name, boolean archived, Entity entity) {
+            String columnList = type.equals("question") ? DiscussionBoardDAO.QUESTION_COLUMNS
+                    : DiscussionBoardDAO.ANSWER_COLUMNS;
+            if (archived) {
+                columnList += ", archivedAt";
+            }
+            this.type = type;
+            this.name = name;
+            this.columns = columnList.split(", ");
+            this.sqlTypes = new int[columns.length];
+            this.csvPositions = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                sqlTypes[i] = INT_COLUMNS.contains(columns[i]) ? Types.INTEGER
+                        : BOOLEAN_COLUMNS.contains(columns[i]) ? Types.BOOLEAN
+                        : TIMESTAMP_COLUMNS.contains(columns[i]) ? Types.TIMESTAMP : Types.VARCHAR;
+                csvPositions[i] = Arrays.asList(CSV_COLUMNS).indexOf(columns[i]);
+            }
+            this.insertSql = "INSERT INTO " + name + " (" + columnList + ") VALUES ("
+                    + String.join(", ", Collections.nCopies(columns.length, "?")) + ")";
+            this.entity = entity;
+        }
+
+        //a row's value for the named column
+        Object value(Object[] row, String column) {
+            return row[Arrays.asList(columns).indexOf(column)];
+        }
+    }
+
+    //reads one record at a time as column name to text value, null where the value is null
+    private interface RecordReader {
+        Map<String, String> next() throws IOException;
+        long getRecordNumber();
+    }
+
+    //one flat JSON object per line; blank lines are skipped
+    private static final class JsonRecordReader implements RecordReader {
+        private final BufferedReader in;
+        private final StringBuilder text = new StringBuilder();
+        private long recordNumber;
+        private String line;
+        private int pos;
+
+        JsonRecordReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            do {
+                line = in.readLine();
+                if (line == null) {
+                    return null;
+                }
+            } while (line.isBlank());
+            recordNumber++;
+            pos = 0;
+            Map<String, String> record = new HashMap<>();
+            expect('{');
+            if (peek() == '}') {
+                pos++;
+            } else {
+                do {
+                    String name = readString();
+                    expect(':');
+                    record.put(name, readValue());
+                } while (consume(','));
+                expect('}');
+            }
+            if (peek() != 0) {
+                throw error("unexpected text after the object");
+            }
+            return record;
+        }
+
+        @Override
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        //a string, or a number, true, false or null as its literal text (null for null)
+        private String readValue() throws IOException {
+            if (peek() == '"') {
+                return readString();
+            }
+            int begin = pos;
+            while (pos < line.length() && ",}] \t".indexOf(line.charAt(pos)) < 0) {
+                pos++;
+            }
+            String literal = line.substring(begin, pos);
+            if (literal.isEmpty()) {
+                throw error("expected a value");
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString() throws IOException {
+            expect('"');
+            text.setLength(0);
+            while (pos < line.length()) {
+                char c = line.charAt(pos++);
+                if (c == '"') {
+                    return text.toString();
+                }
+                if (c != '\\') {
+                    text.append(c);
+                    continue;
+                }
+                if (pos >= line.length()) {
+                    break;
+                }
+                char escaped = line.charAt(pos++);
+                switch (escaped) {
+                    case 'n': text.append('\n'); break;
+                    case 'r': text.append('\r'); break;
+                    case 't': text.append('\t'); break;
+                    case 'b': text.append('\b'); break;
+                    case 'f': text.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > line.length()) {
+                            throw error("truncated \\u escape");
+                        }
+                        try {
+                            text.append((char) Integer.parseInt(line.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw error("bad \\u escape");
+                        }
+                        pos += 4;
+                        break;
+                    default: text.append(escaped); //" \ and /
+                }
+            }
+            throw error("unterminated string");
+        }
+
+        //the next character after whitespace, or 0 at the end of the line
+        private char peek() {
+            while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+                pos++;
+            }
+            return pos < line.length() ? line.charAt(pos) : 0;
+        }
+
+        private boolean consume(char c) {
+            if (peek() == c) {
+                pos++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) throws IOException {
+            if (!consume(c)) {
+                throw error("expected '" + c + "'");
+            }
+        }
+
+        private IOException error(String message) {
+            return new IOException("Record " + recordNumber + ": " + message + " at column " + (pos + 1));
+        }
+    }
+
+    //RFC 4180 records under a header row naming the columns; quoted fields may span lines
+    private static final class CsvRecordReader implements RecordReader {
+        private final BufferedReader in;
+        private final StringBuilder field = new StringBuilder();
+        private final List<String> fields = new ArrayList<>();
+        private String[] header;
+        private long recordNumber;
+
+        CsvRecordReader(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public Map<String, String> next() throws IOException {
+            if (header == null) {
+                if (!readRecord()) {
+                    return null;
+                }
+                header = fields.toArray(new String[0]);
+            }
+            if (!readRecord()) {
+                return null;
+            }
+            recordNumber++;
+            if (fields.size() != header.length) {
+                throw new IOException("Record " + recordNumber + ": " + fields.size() + " fields, header has "
+                        + header.length);
+            }
+            Map<String, String> record = new HashMap<>();
+            for (int i = 0; i < header.length; i++) {
+                record.put(header[i], fields.get(i));
+            }
+            return record;
+        }
+
+        @Override
+        public long getRecordNumber() {
+            return recordNumber;
+        }
+
+        //read the next non-empty record into fields; false at the end of the input
+        private boolean readRecord() throws IOException {
+            fields.clear();
+            int c = in.read();
+            while (c == '\r' || c == '\n') {
+                c = in.read();
+            }
+            if (c == -1) {
+                return false;
+            }
+            while (true) {
+                field.setLength(0);
+                boolean quoted = c == '"';
+                if (quoted) {
+                    while (true) {
+                        c = in.read();
+                        if (c == -1) {
+                            throw new IOException("Record " + (recordNumber + 1) + ": unterminated quoted field");
+                        }
+                        if (c == '"') {
+                            c = in.read();
+                            if (c != '"') {
+                                break;
+                            }
+                        }
+                        field.append((char) c);
+                    }
+                } else {
+                    while (c != ',' && c != '\r' && c != '\n' && c != -1) {
+                        field.append((char) c);
+                        c = in.read();
+                    }
+                }
+                fields.add(quoted || field.length() > 0 ? field.toString() : null);
+                if (c == ',') {
+                    c = in.read();
+                    continue;
+                }
+                if (c == '\r') {
+                    in.mark(1);
+                    if (in.read() != '\n') {
+                        in.reset();
+                    }
+                } else if (c != '\n' && c != -1) {
+                    throw new IOException("Record " + (recordNumber + 1) + ": text after a quoted field");
+                }
+                return true;
+            }
+        }
+    }
+}
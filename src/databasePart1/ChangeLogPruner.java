@@ -0,0 +1,78 @@
+package databasePart1;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ChangeLogPruner class keeps the discussion board's change log to a bounded window. On a fixed
+ * schedule it deletes entries older than the retention period through
+ * DiscussionBoardDAO.pruneChangeLog; a client that last synced before that window gets a resync
+ * from changesSince instead of a delta.
+ */
+public final class ChangeLogPruner implements AutoCloseable {
+    public static final Duration DEFAULT_RETENTION = Duration.ofDays(7);
+    public static final long DEFAULT_INTERVAL_MINUTES = 60;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    private final DiscussionBoardDAO dao;
+    private final Duration retention;
+    private final int batchSize;
+    private final PeriodicTask task;
+
+    //metrics
+    private final AtomicLong pruneCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong lastPruneNanos = new AtomicLong();
+
+    public ChangeLogPruner(DiscussionBoardDAO dao) {
+        this(dao, DEFAULT_RETENTION, DEFAULT_INTERVAL_MINUTES, TimeUnit.MINUTES, DEFAULT_BATCH_SIZE);
+    }
+
+    public ChangeLogPruner(DiscussionBoardDAO dao, Duration retention, long interval, TimeUnit unit, int batchSize) {
+        if (retention.isNegative() || interval < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Retention must not be negative, interval and batch size at least 1");
+        }
+        this.dao = dao;
+        this.retention = retention;
+        this.batchSize = batchSize;
+        this.task = new PeriodicTask("change-log-pruner", "Change log pruning", this::prune, 0, interval, unit);
+    }
+
+    /**
+     * Deletes every entry older than the retention period now and returns how many were deleted.
+     */
+    public int prune() throws SQLException {
+        long start = System.nanoTime();
+        int deleted = dao.pruneChangeLog(LocalDateTime.now().minus(retention), batchSize);
+        pruneCount.incrementAndGet();
+        deletedCount.addAndGet(deleted);
+        lastPruneNanos.set(System.nanoTime() - start);
+        return deleted;
+    }
+
+
+    @Override
+    public void close() {
+        task.close();
+    }
+
+    //metrics
+    public long getPruneCount() {
+        return pruneCount.get();
+    }
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+    public double getLastPruneMillis() {
+        return lastPruneNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ChangeLogPruner{retention=%s, runs=%d, deleted=%d, lastRun=%.3fms}",
+                retention, getPruneCount(), getDeletedCount(), getLastPruneMillis());
+    }
+}
@@ -0,0 +1,119 @@
+package databasePart1;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import application.Answer;
+import application.Question;
+
+/**
+ * The CommittedChanges class holds the question and answer rows one DiscussionBoardDAO transaction
+ * wrote, in the order it wrote them, so a DiscussionBoardDAO.ChangeListener can apply them without
+ * reading them back. Each row is a copy with the values the statement stored: the new id, version
+ * and update time, and timestamps at the column's microsecond precision. The DAO fills it while the
+ * transaction runs and hands it to the listener only once it has committed.
+ */
+public final class CommittedChanges {
+
+    //receives the changes of a transaction in the order they were written
+    public interface Visitor {
+        // A question inserted or updated. An update carries the columns it set; answerCount and
+        // acceptedAnswerId are the ones the question already had, which the answer changes keep in step.
+        void questionWritten(Question question);
+        // A question deleted or archived, its answers with it.
+        void questionRemoved(int questionId);
+        // An answer inserted or updated.
+        void answerWritten(Answer answer);
+        // An answer deleted.
+        void answerDeleted(int answerId, int questionId);
+    }
+
+    private final List<Consumer<Visitor>> changes = new ArrayList<>();
+
+    // Hands every change to the visitor, oldest first.
+    public void replay(Visitor visitor) {
+        for (Consumer<Visitor> change : changes) {
+            change.accept(visitor);
+        }
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    //a question inserted with the given id: no answers yet, version 0
+    void questionInserted(Question question, int questionId) {
+        Question row = BoardReadModel.copy(question);
+        row.setQuestionId(questionId);
+        row.setAnswerCount(0);
+        row.setAcceptedAnswerId(null);
+        row.setVersion(0);
+        stored(row);
+        changes.add(visitor -> visitor.questionWritten(row));
+    }
+
+    //a question updated at updatedAt to the given version
+    void questionUpdated(Question question, LocalDateTime updatedAt, int version) {
+        Question row = BoardReadModel.copy(question);
+        row.setUpdatedAt(updatedAt);
+        row.setVersion(version);
+        stored(row);
+        changes.add(visitor -> visitor.questionWritten(row));
+    }
+
+    //a question inserted with every column given, as BoardTransfer imports it
+    void questionRestored(Question question) {
+        Question row = BoardReadModel.copy(question);
+        stored(row);
+        changes.add(visitor -> visitor.questionWritten(row));
+    }
+
+    void questionRemoved(int questionId) {
+        changes.add(visitor -> visitor.questionRemoved(questionId));
+    }
+
+    //an answer inserted with the given id, version 0
+    void answerInserted(Answer answer, int answerId) {
+        Answer row = BoardReadModel.copy(answer);
+        row.setAnswerId(answerId);
+        row.setVersion(0);
+        stored(row);
+        changes.add(visitor -> visitor.answerWritten(row));
+    }
+
+    //an answer updated at updatedAt to the given version
+    void answerUpdated(Answer answer, LocalDateTime updatedAt, int version) {
+        Answer row = BoardReadModel.copy(answer);
+        row.setUpdatedAt(updatedAt);
+        row.setVersion(version);
+        stored(row);
+        changes.add(visitor -> visitor.answerWritten(row));
+    }
+
+    //an answer inserted with every column given, as BoardTransfer imports it
+    void answerRestored(Answer answer) {
+        Answer row = BoardReadModel.copy(answer);
+        stored(row);
+        changes.add(visitor -> visitor.answerWritten(row));
+    }
+
+    void answerDeleted(int answerId, int questionId) {
+        changes.add(visitor -> visitor.answerDeleted(answerId, questionId));
+    }
+
+    private static void stored(Question row) {
+        row.setCreatedAt(DiscussionBoardDAO.stored(row.getCreatedAt()));
+        row.setUpdatedAt(DiscussionBoardDAO.stored(row.getUpdatedAt()));
+    }
+
+    private static void stored(Answer row) {
+        row.setCreatedAt(DiscussionBoardDAO.stored(row.getCreatedAt()));
+        row.setUpdatedAt(DiscussionBoardDAO.stored(row.getUpdatedAt()));
+    }
+}
@@ -0,0 +1,358 @@
+package databasePart1;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The ConnectionPool class keeps a bounded set of open JDBC connections that DatabaseHelper
+ * and DiscussionBoardDAO borrow from instead of opening their own through DriverManager.
+ * Borrowed connections are validated before they are handed out, are returned to the pool
+ * when closed, and are reported as leaks if they are held for longer than the leak threshold.
+ */
+public class ConnectionPool {
+
+    // JDBC driver name; the URL and credentials come from DatabaseConfig
+    static final String JDBC_DRIVER = "org.h2.Driver";
+
+    //defaults for the shared pool
+    static final int DEFAULT_MAX_SIZE = 10;
+    static final long DEFAULT_BORROW_TIMEOUT_MILLIS = 5000;
+    static final long DEFAULT_LEAK_THRESHOLD_MILLIS = 30000;
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    private static ConnectionPool shared;
+    //settings the shared pool was created from
+    private static DatabaseConfig sharedConfig;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long leakThresholdMillis;
+
+    //physical connections that are open but not borrowed
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    //borrowed connections, keyed by the proxy handed to the caller
+    private final Map<Connection, Lease> active = new ConcurrentHashMap<>();
+    private final Semaphore permits;
+    private final ScheduledExecutorService leakDetector;
+    private final StatementRegistry statementRegistry = new StatementRegistry();
+    private volatile boolean shutdown;
+
+    //pool metrics
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong validationFailures = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+
+    public ConnectionPool(String url, String user, String password, int maxSize,
+                          long borrowTimeoutMillis, long leakThresholdMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be at least 1");
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+        this.permits = new Semaphore(maxSize, true);
+
+        this.leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-leak-detector");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000, leakThresholdMillis / 2);
+        leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // Returns the pool used by the application, creating it on first use.
+    public static synchronized ConnectionPool getShared() throws SQLException {
+        if (shared == null || shared.shutdown) {
+            try {
+                Class.forName(JDBC_DRIVER); // Load the JDBC driver
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("JDBC Driver not found: " + e.getMessage(), e);
+            }
+            DatabaseConfig config;
+            try {
+                config = DatabaseConfig.load();
+            } catch (IOException | IllegalArgumentException e) {
+                throw new SQLException("Invalid database configuration: " + e.getMessage(), e);
+            }
+            shared = config.createPool();
+            sharedConfig = config;
+        }
+        return shared;
+    }
+
+    // Returns the settings the shared pool was created from, so they are read only once.
+    public static synchronized DatabaseConfig getSharedConfig() throws SQLException {
+        getShared();
+        return sharedConfig;
+    }
+
+    /**
+     * Borrows a connection from the pool, waiting up to the borrow timeout if every connection
+     * is in use. Closing the returned connection hands it back to the pool.
+     */
+    public Connection getConnection() throws SQLException {
+        if (shutdown) {
+            throw new SQLException("Connection pool has been shut down");
+        }
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + borrowTimeoutMillis
+                        + " ms waiting for a database connection (" + getActiveCount() + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a database connection", e);
+        }
+        recordWait(System.nanoTime() - start);
+
+        try {
+            Connection physical = takeValidIdleConnection();
+            if (physical == null) {
+                physical = DriverManager.getConnection(url, user, password);
+                createdCount.incrementAndGet();
+            }
+            PooledConnection handler = new PooledConnection(physical);
+            Connection proxy = (Connection) Proxy.newProxyInstance(
+                    ConnectionPool.class.getClassLoader(), new Class<?>[] { Connection.class }, handler);
+            active.put(proxy, new Lease());
+            borrowCount.incrementAndGet();
+            return proxy;
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the statement registered under name for a connection borrowed from this pool,
+     * preparing it the first time that connection sees it. The statement stays open for reuse,
+     * so do not close it; close its ResultSets and use it only while holding the connection.
+     */
+    public PreparedStatement prepare(Connection borrowed, String name, String sql) throws SQLException {
+        return statementRegistry.prepare(physicalOf(borrowed), name, sql, false);
+    }
+
+    // Same as prepare, for inserts that read back generated keys.
+    public PreparedStatement prepareReturningKeys(Connection borrowed, String name, String sql) throws SQLException {
+        return statementRegistry.prepare(physicalOf(borrowed), name, sql, true);
+    }
+
+    //unwrap a borrowed proxy to the physical connection the statements belong to
+    private Connection physicalOf(Connection borrowed) throws SQLException {
+        if (!Proxy.isProxyClass(borrowed.getClass())
+                || !(Proxy.getInvocationHandler(borrowed) instanceof PooledConnection)) {
+            throw new IllegalArgumentException("Connection was not borrowed from this pool");
+        }
+        PooledConnection handler = (PooledConnection) Proxy.getInvocationHandler(borrowed);
+        if (handler.returned) {
+            throw new SQLException("Connection has already been returned to the pool");
+        }
+        return handler.physical;
+    }
+
+    //pop idle connections until one passes validation
+    private Connection takeValidIdleConnection() {
+        while (true) {
+            Connection candidate;
+            synchronized (idle) {
+                candidate = idle.pollFirst();
+            }
+            if (candidate == null) {
+                return null;
+            }
+            try {
+                if (candidate.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    return candidate;
+                }
+            } catch (SQLException e) {
+                //fall through and discard
+            }
+            validationFailures.incrementAndGet();
+            closeQuietly(candidate);
+        }
+    }
+
+    //return a physical connection to the idle set, or discard it if it is unusable
+    private void release(Connection proxy, Connection physical) {
+        active.remove(proxy);
+        try {
+            if (shutdown || physical.isClosed()) {
+                closeQuietly(physical);
+                return;
+            }
+            if (!physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            synchronized (idle) {
+                idle.addFirst(physical);
+            }
+        } catch (SQLException e) {
+            closeQuietly(physical);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    //report connections held past the leak threshold, once per lease
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Lease lease : active.values()) {
+            if (!lease.reported && now - lease.borrowedAt > leakThresholdMillis) {
+                lease.reported = true;
+                leakCount.incrementAndGet();
+                System.err.println("Possible connection leak: connection borrowed by thread '"
+                        + lease.threadName + "' has been held for " + (now - lease.borrowedAt) + " ms");
+                lease.borrowSite.printStackTrace();
+            }
+        }
+    }
+
+    // Closes every idle connection and stops handing out new ones.
+    public void shutdown() {
+        shutdown = true;
+        leakDetector.shutdownNow();
+        synchronized (idle) {
+            for (Connection c : idle) {
+                closeQuietly(c);
+            }
+            idle.clear();
+        }
+    }
+
+    private void closeQuietly(Connection c) {
+        statementRegistry.forget(c);
+        try {
+            c.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // The JDBC URL connections are opened with.
+    public String getUrl() {
+        return url;
+    }
+
+    //metrics
+    public int getMaxSize() {
+        return maxSize;
+    }
+    public int getActiveCount() {
+        return active.size();
+    }
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+    public long getValidationFailureCount() {
+        return validationFailures.get();
+    }
+    public long getLeakCount() {
+        return leakCount.get();
+    }
+    public StatementRegistry getStatementRegistry() {
+        return statementRegistry;
+    }
+    public double getAverageWaitMillis() {
+        long borrows = borrowCount.get();
+        return borrows == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / borrows;
+    }
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ConnectionPool{active=%d, idle=%d, max=%d, borrows=%d, created=%d, "
+                + "avgWait=%.3fms, maxWait=%.3fms, validationFailures=%d, leaks=%d}",
+                getActiveCount(), getIdleCount(), maxSize, getBorrowCount(), getCreatedCount(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getValidationFailureCount(), getLeakCount());
+    }
+
+    //bookkeeping for a borrowed connection
+    private static class Lease {
+        final long borrowedAt = System.currentTimeMillis();
+        final String threadName = Thread.currentThread().getName();
+        final Throwable borrowSite = new Throwable("Connection borrowed here");
+        volatile boolean reported;
+    }
+
+    //proxy handler that turns close() into a return to the pool
+    private class PooledConnection implements InvocationHandler {
+        private final Connection physical;
+        private volatile boolean returned;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release((Connection) proxy, physical);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled[" + physical + "]";
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has already been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package databasePart1;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * The DatabaseConfig class decides which database the application connects to and how the shared
+ * ConnectionPool is sized. Settings come from a properties file (database.properties in the working
+ * directory, or the file named by the db.config system property) and can be overridden one by one
+ * with system properties of the same name, e.g. -Ddb.profile=shared.
+ *
+ * Profiles:
+ *   memory   - private in-memory database, for tests and demos (db.name)
+ *   embedded - the board's database file, opened exclusively by this process (db.path); the default
+ *   shared   - the same file with AUTO_SERVER, so several clients on one machine or a shared drive
+ *              can use it at once: the first opens it and serves the others over TCP
+ *   server   - a board hosted by a separately started H2 TCP server (db.host, db.port, db.path),
+ *              e.g. java -cp h2.jar org.h2.tools.Server -tcp -tcpAllowOthers -ifExists
+ *
+ * The file profiles tune the MVStore page cache (db.cacheSizeKb) and compression (db.compress).
+ * db.url, when set, is used as is and overrides the profile.
+ *
+ * Online backups go to db.backup.dir (default: the database path plus "-backups"), every
+ * db.backup.intervalHours hours, keeping the newest db.backup.keep snapshots. They are only taken
+ * with the memory and embedded profiles; a shared or server board is backed up where it is served.
+ *
+ * Archiving is off unless db.archive.maxAgeDays is set: then questions older than that many days
+ * are moved to the archive tables with their answers, every db.archive.intervalHours hours.
+ */
+public class DatabaseConfig {
+
+    public enum Profile { MEMORY, EMBEDDED, SHARED, SERVER }
+
+    public static final String CONFIG_FILE_PROPERTY = "db.config";
+    public static final String DEFAULT_CONFIG_FILE = "database.properties";
+
+    //defaults
+    public static final String DEFAULT_PATH = "~/FoundationDatabase";
+    public static final String DEFAULT_NAME = "FoundationDatabase";
+    public static final String DEFAULT_HOST = "localhost";
+    public static final int DEFAULT_PORT = 9092;
+    public static final int DEFAULT_CACHE_SIZE_KB = 64 * 1024;
+
+    private final Profile profile;
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int poolMaxSize;
+    private final long borrowTimeoutMillis;
+    private final long leakThresholdMillis;
+    private final Path backupDirectory;
+    private final int backupKeep;
+    private final long backupIntervalHours;
+    private final long archiveMaxAgeDays;
+    private final long archiveIntervalHours;
+
+    private DatabaseConfig(Properties props) {
+        this.profile = parseProfile(props.getProperty("db.profile", "embedded"));
+        this.user = props.getProperty("db.user", "sa");
+        this.password = props.getProperty("db.password", "");
+        this.poolMaxSize = parseInt(props, "db.pool.maxSize", ConnectionPool.DEFAULT_MAX_SIZE);
+        this.borrowTimeoutMillis = parseLong(props, "db.pool.borrowTimeoutMillis", ConnectionPool.DEFAULT_BORROW_TIMEOUT_MILLIS);
+        this.leakThresholdMillis = parseLong(props, "db.pool.leakThresholdMillis", ConnectionPool.DEFAULT_LEAK_THRESHOLD_MILLIS);
+        this.backupDirectory = expandHome(props.getProperty("db.backup.dir",
+                props.getProperty("db.path", DEFAULT_PATH) + "-backups"));
+        this.backupKeep = parseInt(props, "db.backup.keep", BackupService.DEFAULT_KEEP);
+        this.backupIntervalHours = parseLong(props, "db.backup.intervalHours", BackupService.DEFAULT_INTERVAL_HOURS);
+        this.archiveMaxAgeDays = parseLong(props, "db.archive.maxAgeDays", 0);
+        this.archiveIntervalHours = parseLong(props, "db.archive.intervalHours", QuestionArchiver.DEFAULT_INTERVAL_HOURS);
+        String explicitUrl = props.getProperty("db.url");
+        this.url = explicitUrl != null && !explicitUrl.trim().isEmpty() ? explicitUrl.trim() : buildUrl(props);
+    }
+
+    // Reads the configuration file, if there is one, and applies system property overrides.
+    public static DatabaseConfig load() throws IOException {
+        Properties props = new Properties();
+        Path file = Paths.get(System.getProperty(CONFIG_FILE_PROPERTY, DEFAULT_CONFIG_FILE));
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                props.load(in);
+            }
+        } else if (System.getProperty(CONFIG_FILE_PROPERTY) != null) {
+            throw new IOException("Database configuration file not found: " + file.toAbsolutePath());
+        }
+        for (String name : System.getProperties().stringPropertyNames()) {
+            if (name.startsWith("db.")) {
+                props.setProperty(name, System.getProperty(name));
+            }
+        }
+        return new DatabaseConfig(props);
+    }
+
+    // Builds a configuration from the given settings only, ignoring files and system properties.
+    public static DatabaseConfig fromProperties(Properties props) {
+        return new DatabaseConfig(props);
+    }
+
+    // Creates a pool for this configuration.
+    public ConnectionPool createPool() {
+        return new ConnectionPool(url, user, password, poolMaxSize, borrowTimeoutMillis, leakThresholdMillis);
+    }
+
+    //JDBC URL for the profile
+    private String buildUrl(Properties props) {
+        String path = props.getProperty("db.path", DEFAULT_PATH);
+        String fileSettings = ";CACHE_SIZE=" + parseInt(props, "db.cacheSizeKb", DEFAULT_CACHE_SIZE_KB)
+                + ";COMPRESS=" + (Boolean.parseBoolean(props.getProperty("db.compress", "true")) ? "TRUE" : "FALSE");
+        switch (profile) {
+            case MEMORY:
+                //kept alive until the JVM exits rather than until the last connection closes
+                return "jdbc:h2:mem:" + props.getProperty("db.name", DEFAULT_NAME) + ";DB_CLOSE_DELAY=-1";
+            case SHARED:
+                return "jdbc:h2:" + path + ";AUTO_SERVER=TRUE" + fileSettings;
+            case SERVER:
+                return "jdbc:h2:tcp://" + props.getProperty("db.host", DEFAULT_HOST) + ":"
+                        + parseInt(props, "db.port", DEFAULT_PORT) + "/" + path + fileSettings;
+            case EMBEDDED:
+            default:
+                return "jdbc:h2:" + path + fileSettings;
+        }
+    }
+
+    private static Profile parseProfile(String value) {
+        try {
+            return Profile.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown database profile '" + value
+                    + "' (expected memory, embedded, shared or server)");
+        }
+    }
+    //H2 expands a leading ~ in database paths; do the same for the backup directory
+    private static Path expandHome(String path) {
+        String trimmed = path.trim();
+        if (trimmed.equals("~") || trimmed.startsWith("~/") || trimmed.startsWith("~\\")) {
+            trimmed = System.getProperty("user.home") + trimmed.substring(1);
+        }
+        return Paths.get(trimmed);
+    }
+    private static int parseInt(Properties props, String key, int defaultValue) {
+        return (int) parseLong(props, key, defaultValue);
+    }
+    private static long parseLong(Properties props, String key, long defaultValue) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Database setting " + key + " must be a number, not '" + value + "'");
+        }
+    }
+
+    //getters
+    public Profile getProfile() {
+        return profile;
+    }
+    public String getUrl() {
+        return url;
+    }
+    public String getUser() {
+        return user;
+    }
+    public String getPassword() {
+        return password;
+    }
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+    public long getBorrowTimeoutMillis() {
+        return borrowTimeoutMillis;
+    }
+    public long getLeakThresholdMillis() {
+        return leakThresholdMillis;
+    }
+    public Path getBackupDirectory() {
+        return backupDirectory;
+    }
+    public int getBackupKeep() {
+        return backupKeep;
+    }
+    public long getBackupIntervalHours() {
+        return backupIntervalHours;
+    }
+    // true only if db.archive.maxAgeDays was set to a positive number of days
+    public boolean isArchiveEnabled() {
+        return archiveMaxAgeDays > 0;
+    }
+    public long getArchiveMaxAgeDays() {
+        return archiveMaxAgeDays;
+    }
+    public long getArchiveIntervalHours() {
+        return archiveIntervalHours;
+    }
+
+    @Override
+    public String toString() {
+        //never print the password
+        return "DatabaseConfig{profile=" + profile + ", url='" + url + "', user='" + user
+                + "', poolMaxSize=" + poolMaxSize + '}';
+    }
+}
@@ -1,10 +1,16 @@
 package databasePart1;
+import java.io.IOException;
 import java.sql.*;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 import application.User;
 
@@ -15,172 +21,393 @@ import application.User;
  */
 public class DatabaseHelper {
 
-	// JDBC driver name and database URL 
-	static final String JDBC_DRIVER = "org.h2.Driver";   
-	static final String DB_URL = "jdbc:h2:~/FoundationDatabase";  
-
-	//  Database credentials 
-	static final String USER = "sa"; 
-	static final String PASS = ""; 
-
-	private Connection connection = null;
-	private Statement statement = null; 
-	//	PreparedStatement pstmt
+	// Shared pool that every operation borrows its connection from
+	private ConnectionPool pool;
+	// Role and existence of recently looked up userNames
+	private final UserDirectoryCache userCache = new UserDirectoryCache();
+	// Salted password hashing, calibrated when the database is connected
+	private PasswordHasher hasher;
+	// Verified against when the userName is unknown, so a miss costs as long as a wrong password
+	private CompletableFuture<String> unknownUserHash;
+	public static final Duration DEFAULT_INVITATION_CODE_VALIDITY = Duration.ofDays(7);
+	// Times colliding invitation codes are redrawn before minting gives up
+	private static final int MAX_MINT_ROUNDS = 10;
+	// Random source of new invitation codes
+	private volatile InvitationCodeGenerator codeGenerator = new InvitationCodeGenerator();
+	// How long a new invitation code can be redeemed
+	private volatile Duration invitationCodeValidity = DEFAULT_INVITATION_CODE_VALIDITY;
+	// Deletes used and expired invitation codes in the background
+	private InvitationCodeSweeper invitationCodeSweeper;
+	// Deletes old discussion board change log entries in the background
+	private ChangeLogPruner changeLogPruner;
+	// Moves old questions to the archive tables in the background, if db.archive.maxAgeDays is set
+	private QuestionArchiver questionArchiver;
+	// Takes scheduled and on-demand online snapshots of the database, if it is opened in this process
+	private BackupService backupService;
 
 	public void connectToDatabase() throws SQLException {
-		try {
-			Class.forName(JDBC_DRIVER); // Load the JDBC driver
-			System.out.println("Connecting to database...");
-			connection = DriverManager.getConnection(DB_URL, USER, PASS);
-			statement = connection.createStatement(); 
-			// You can use this command to clear the database and restart from fresh.
-			//statement.execute("DROP ALL OBJECTS");
-
-			createTables();  // Create the necessary tables if they don't exist
-		} catch (ClassNotFoundException e) {
-			System.err.println("JDBC Driver not found: " + e.getMessage());
+		System.out.println("Connecting to database...");
+		pool = ConnectionPool.getShared();
+		SchemaMigrator.migrate(pool);  // Create or upgrade the tables if needed
+		hasher = PasswordHasher.getShared();
+		// Calibrating and hashing take seconds, so both run on the hasher's threads, not the caller's
+		unknownUserHash = hasher.hashAsync(UUID.randomUUID().toString());
+		DatabaseConfig config = ConnectionPool.getSharedConfig();
+		if (invitationCodeSweeper == null) {
+			invitationCodeSweeper = new InvitationCodeSweeper(pool);
+		}
+		if (changeLogPruner == null) {
+			// Load the board into memory in the background, so neither startup nor opening the
+			// discussion board waits on it
+			AsyncDatabase.whenDone(new AsyncDatabase(Runnable::run).submit(() -> BoardReadModel.forPool(pool)),
+					model -> { },
+					e -> System.err.println("Loading the discussion board failed: " + e.getMessage()));
+			DiscussionBoardDAO boardDao = new DiscussionBoardDAO(pool);
+			changeLogPruner = new ChangeLogPruner(boardDao);
+			if (config.isArchiveEnabled()) {
+				questionArchiver = new QuestionArchiver(boardDao, Duration.ofDays(config.getArchiveMaxAgeDays()),
+						config.getArchiveIntervalHours(), TimeUnit.HOURS, QuestionArchiver.DEFAULT_BATCH_SIZE);
+			}
+		}
+		// A shared or server database is written by another process, which has to take its backups
+		if (backupService == null && BackupService.isLocal(pool.getUrl())) {
+			backupService = new BackupService(pool, config.getBackupDirectory(), config.getBackupKeep(),
+					config.getBackupIntervalHours(), TimeUnit.HOURS);
 		}
-	}
-
-	private void createTables() throws SQLException {
-		String userTable = "CREATE TABLE IF NOT EXISTS cse360users ("
-				+ "id INT AUTO_INCREMENT PRIMARY KEY, "
-				+ "userName VARCHAR(255) UNIQUE, "
-				+ "password VARCHAR(255), "
-				+ "role VARCHAR(20))";
-		statement.execute(userTable);
-		
-		// Create the invitation codes table
-	    String invitationCodesTable = "CREATE TABLE IF NOT EXISTS InvitationCodes ("
-	            + "code VARCHAR(10) PRIMARY KEY, "
-	            + "isUsed BOOLEAN DEFAULT FALSE)";
-	    statement.execute(invitationCodesTable);
 	}
 
 
 	// Check if the database is empty
 	public boolean isDatabaseEmpty() throws SQLException {
 		String query = "SELECT COUNT(*) AS count FROM cse360users";
-		ResultSet resultSet = statement.executeQuery(query);
-		if (resultSet.next()) {
-			return resultSet.getInt("count") == 0;
+		try (Connection connection = pool.getConnection();
+				Statement statement = connection.createStatement();
+				ResultSet resultSet = statement.executeQuery(query)) {
+			if (resultSet.next()) {
+				return resultSet.getInt("count") == 0;
+			}
 		}
 		return true;
 	}
 
-	// Registers a new user in the database.
+	// Returns the connection pool shared with the discussion board.
+	public ConnectionPool getConnectionPool() {
+		return pool;
+	}
+
+	// Returns the cache behind getUserRole and doesUserExist.
+	public UserDirectoryCache getUserDirectoryCache() {
+		return userCache;
+	}
+
+	// Registers a new user in the database, storing a salted hash of their password.
 	public void register(User user) throws SQLException {
+		// Hash before borrowing a connection so it isn't held for the hashing time
+		String passwordHash = hasher.hashPassword(user.getPassword());
+		try (Connection connection = pool.getConnection()) {
+			insertUser(connection, user, passwordHash);
+		}
+		// The name may be cached as missing
+		userCache.invalidate(user.getUserName());
+	}
+
+	// Redeems an invitation code and registers the user in one transaction. Returns false, registering
+	// nobody, if the code is used or expired; if the insert fails the code is left unused.
+	public boolean registerWithInvitationCode(User user, String code) throws SQLException {
+		String redeem = "UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ? AND isUsed = FALSE AND expiresAt > ?";
+		String passwordHash = hasher.hashPassword(user.getPassword());
+		try (Connection connection = pool.getConnection()) {
+			connection.setAutoCommit(false);
+			try {
+				PreparedStatement pstmt = pool.prepare(connection, "validateInvitationCode", redeem);
+				pstmt.setString(1, code);
+				pstmt.setObject(2, LocalDateTime.now());
+				if (pstmt.executeUpdate() != 1) {
+					connection.rollback();
+					return false;
+				}
+				insertUser(connection, user, passwordHash);
+				connection.commit();
+			} catch (SQLException e) {
+				connection.rollback();
+				throw e;
+			} finally {
+				connection.setAutoCommit(true);
+			}
+		}
+		userCache.invalidate(user.getUserName());
+		return true;
+	}
+
+	// Inserts a user row on the caller's connection
+	private void insertUser(Connection connection, User user, String passwordHash) throws SQLException {
 		String insertUser = "INSERT INTO cse360users (userName, password, role) VALUES (?, ?, ?)";
-		try (PreparedStatement pstmt = connection.prepareStatement(insertUser)) {
-			pstmt.setString(1, user.getUserName());
-			pstmt.setString(2, user.getPassword());
-			pstmt.setString(3, user.getRole());
-			pstmt.executeUpdate();
+		PreparedStatement pstmt = pool.prepare(connection, "register", insertUser);
+		pstmt.setString(1, user.getUserName());
+		pstmt.setString(2, passwordHash);
+		pstmt.setString(3, user.getRole());
+		pstmt.executeUpdate();
+	}
+
+	// Checks a user's credentials with one indexed lookup and returns their role, or null if the
+	// userName and password don't match an account. The password is verified on the hasher's
+	// executor after the connection has been returned to the pool.
+	public String authenticate(String userName, String password) throws SQLException {
+		String query = "SELECT password, role FROM cse360users WHERE userName = ?";
+		String stored = null;
+		String role = null;
+		try (Connection connection = pool.getConnection()) {
+			PreparedStatement pstmt = pool.prepare(connection, "authenticate", query);
+			pstmt.setString(1, userName);
+			try (ResultSet rs = pstmt.executeQuery()) {
+				if (rs.next()) {
+					stored = rs.getString("password");
+					role = rs.getString("role");
+				}
+			}
 		}
+		if (stored == null) {
+			hasher.verifyPassword(password, unknownUserHash.join());
+			return null;
+		}
+		if (!hasher.verifyPassword(password, stored)) {
+			return null;
+		}
+		userCache.putRole(userName, role);
+		if (hasher.needsRehash(stored)) {
+			upgradePasswordHash(userName, stored, password);
+		}
+		return role;
 	}
 
 	// Validates a user's login credentials.
 	public boolean login(User user) throws SQLException {
-		String query = "SELECT * FROM cse360users WHERE userName = ? AND password = ? AND role = ?";
-		try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-			pstmt.setString(1, user.getUserName());
-			pstmt.setString(2, user.getPassword());
-			pstmt.setString(3, user.getRole());
-			try (ResultSet rs = pstmt.executeQuery()) {
-				return rs.next();
-			}
+		String role = authenticate(user.getUserName(), user.getPassword());
+		return role != null && role.equals(user.getRole());
+	}
+
+	// Replaces a plain text password from before hashing, or a hash weaker than the calibrated
+	// cost, once the user has proved they know the password.
+	private void upgradePasswordHash(String userName, String stored, String password) {
+		String update = "UPDATE cse360users SET password = ? WHERE userName = ? AND password = ?";
+		String passwordHash = hasher.hashPassword(password);
+		try (Connection connection = pool.getConnection()) {
+			PreparedStatement pstmt = pool.prepare(connection, "upgradePasswordHash", update);
+			pstmt.setString(1, passwordHash);
+			pstmt.setString(2, userName);
+			pstmt.setString(3, stored);
+			pstmt.executeUpdate();
+		} catch (SQLException e) {
+			// The old value still verifies, so the login goes ahead
+			e.printStackTrace();
 		}
 	}
 	
-	// Checks if a user already exists in the database based on their userName.
+	// Checks if a user already exists based on their userName; shares getUserRole's cached lookup.
 	public boolean doesUserExist(String userName) {
-	    String query = "SELECT COUNT(*) FROM cse360users WHERE userName = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        
-	        pstmt.setString(1, userName);
-	        ResultSet rs = pstmt.executeQuery();
-	        
-	        if (rs.next()) {
-	            // If the count is greater than 0, the user exists
-	            return rs.getInt(1) > 0;
-	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
-	    }
-	    return false; // If an error occurs, assume user doesn't exist
+	    return getUserRole(userName) != null; // If an error occurs, assume user doesn't exist
 	}
 	
-	// Retrieves the role of a user from the database using their UserName.
+	// Retrieves the role of a user using their UserName, from the cache when it was looked up recently.
 	public String getUserRole(String userName) {
+	    UserDirectoryCache.Entry cached = userCache.get(userName);
+	    if (cached != null) {
+	        return cached.getRole();
+	    }
 	    String query = "SELECT role FROM cse360users WHERE userName = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+	    try (Connection connection = pool.getConnection()) {
+	        PreparedStatement pstmt = pool.prepare(connection, "getUserRole", query);
 	        pstmt.setString(1, userName);
-	        ResultSet rs = pstmt.executeQuery();
-	        
-	        if (rs.next()) {
-	            return rs.getString("role"); // Return the role if user exists
+	        try (ResultSet rs = pstmt.executeQuery()) {
+	            if (rs.next()) {
+	                String role = rs.getString("role");
+	                userCache.putRole(userName, role);
+	                return role; // Return the role if user exists
+	            }
 	        }
+	        userCache.putMissing(userName);
 	    } catch (SQLException e) {
 	        e.printStackTrace();
 	    }
 	    return null; // If no user exists or an error occurs
 	}
 	
-	// Generates a new invitation code and inserts it into the database.
+	// Generates a new invitation code and inserts it into the database; null if it couldn't be stored.
 	public String generateInvitationCode() {
-	    String code = UUID.randomUUID().toString().substring(0, 4); // Generate a random 4-character code
-	    String query = "INSERT INTO InvitationCodes (code) VALUES (?)";
-
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, code);
-	        pstmt.executeUpdate();
+	    try {
+	        return generateInvitationCodes(1).get(0);
 	    } catch (SQLException e) {
 	        e.printStackTrace();
+	        return null;
 	    }
+	}
 
-	    return code;
+	// Generates count new invitation codes and inserts them in one batch and one transaction.
+	// A code that collides with an existing one is skipped by the insert and redrawn, a bounded
+	// number of times so a nearly exhausted code space fails instead of spinning.
+	public List<String> generateInvitationCodes(int count) throws SQLException {
+	    if (count < 1) {
+	        throw new IllegalArgumentException("At least one invitation code must be generated");
+	    }
+	    String query = "INSERT INTO InvitationCodes (code, createdAt, expiresAt) SELECT ?, ?, ? WHERE NOT EXISTS "
+	            + "(SELECT 1 FROM InvitationCodes WHERE code = ?)";
+	    LocalDateTime createdAt = LocalDateTime.now();
+	    LocalDateTime expiresAt = createdAt.plus(invitationCodeValidity);
+	    List<String> minted = new ArrayList<>(count);
+	    try (Connection connection = pool.getConnection()) {
+	        connection.setAutoCommit(false);
+	        try {
+	            PreparedStatement pstmt = pool.prepare(connection, "generateInvitationCodes", query);
+	            for (int round = 0; minted.size() < count; round++) {
+	                if (round == MAX_MINT_ROUNDS) {
+	                    throw new SQLException("Only " + minted.size() + " of " + count
+	                            + " invitation codes were unused; use a longer code or a larger alphabet");
+	                }
+	                List<String> batch = new ArrayList<>(codeGenerator.next(count - minted.size()));
+	                for (String code : batch) {
+	                    pstmt.setString(1, code);
+	                    pstmt.setObject(2, createdAt);
+	                    pstmt.setObject(3, expiresAt);
+	                    pstmt.setString(4, code);
+	                    pstmt.addBatch();
+	                }
+	                int[] inserted = pstmt.executeBatch();
+	                for (int i = 0; i < inserted.length; i++) {
+	                    if (inserted[i] == 1) {
+	                        minted.add(batch.get(i));
+	                    }
+	                }
+	            }
+	            connection.commit();
+	        } catch (SQLException e) {
+	            connection.rollback();
+	            throw e;
+	        } finally {
+	            connection.setAutoCommit(true);
+	        }
+	    }
+	    return minted;
+	}
+
+	// Returns the generator used for new invitation codes.
+	public InvitationCodeGenerator getInvitationCodeGenerator() {
+		return codeGenerator;
+	}
+
+	// Changes the alphabet and length of new invitation codes.
+	public void setInvitationCodeGenerator(InvitationCodeGenerator codeGenerator) {
+		this.codeGenerator = codeGenerator;
 	}
 	
-	// Validates an invitation code to check if it is unused.
-	public boolean validateInvitationCode(String code) {
-	    String query = "SELECT * FROM InvitationCodes WHERE code = ? AND isUsed = FALSE";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
-	        pstmt.setString(1, code);
-	        ResultSet rs = pstmt.executeQuery();
-	        if (rs.next()) {
-	            // Mark the code as used
-	            markInvitationCodeAsUsed(code);
-	            return true;
+	// Returns how long new invitation codes can be redeemed.
+	public Duration getInvitationCodeValidity() {
+		return invitationCodeValidity;
+	}
+
+	// Changes how long invitation codes generated from now on can be redeemed.
+	public void setInvitationCodeValidity(Duration validity) {
+		if (validity.isNegative() || validity.isZero()) {
+			throw new IllegalArgumentException("Invitation codes must be valid for some time");
+		}
+		this.invitationCodeValidity = validity;
+	}
+
+	// Returns the background sweeper of used and expired invitation codes, for its metrics.
+	public InvitationCodeSweeper getInvitationCodeSweeper() {
+		return invitationCodeSweeper;
+	}
+
+	// Returns the background pruner of the discussion board change log, for its metrics.
+	public ChangeLogPruner getChangeLogPruner() {
+		return changeLogPruner;
+	}
+
+	// Returns the background archiver of old questions, for its metrics; null if archiving is off.
+	public QuestionArchiver getQuestionArchiver() {
+		return questionArchiver;
+	}
+
+	// Returns the in-memory read model of the discussion board, for its metrics.
+	public BoardReadModel getBoardReadModel() throws SQLException {
+		return BoardReadModel.forPool(pool);
+	}
+
+	// Returns the background backup service, for its snapshots and metrics; null if the database
+	// is served by another process.
+	public BackupService getBackupService() {
+		return backupService;
+	}
+
+	// Takes an online snapshot now, for an admin; waits for a scheduled one already running.
+	public BackupReport backupDatabase() throws SQLException {
+		if (backupService == null) {
+			throw new SQLException("Backups are taken by the process serving the database, not by this client");
+		}
+		try {
+			return backupService.backup();
+		} catch (IOException e) {
+			throw new SQLException("Could not write the backup: " + e.getMessage(), e);
+		}
+	}
+
+	// Counts outstanding, used and expired invitation codes in one pass over the table.
+	public InvitationCodeStats getInvitationCodeStats() throws SQLException {
+	    String query = "SELECT "
+	            + "COALESCE(SUM(CASE WHEN isUsed = FALSE AND expiresAt > ? THEN 1 ELSE 0 END), 0) AS outstanding, "
+	            + "COALESCE(SUM(CASE WHEN isUsed = TRUE THEN 1 ELSE 0 END), 0) AS used, "
+	            + "COALESCE(SUM(CASE WHEN isUsed = FALSE AND expiresAt <= ? THEN 1 ELSE 0 END), 0) AS expired, "
+	            + "MIN(CASE WHEN isUsed = FALSE AND expiresAt > ? THEN expiresAt END) AS nextExpiry "
+	            + "FROM InvitationCodes";
+	    LocalDateTime now = LocalDateTime.now();
+	    try (Connection connection = pool.getConnection()) {
+	        PreparedStatement pstmt = pool.prepare(connection, "getInvitationCodeStats", query);
+	        pstmt.setObject(1, now);
+	        pstmt.setObject(2, now);
+	        pstmt.setObject(3, now);
+	        try (ResultSet rs = pstmt.executeQuery()) {
+	            rs.next();
+	            return new InvitationCodeStats(rs.getInt("outstanding"), rs.getInt("used"), rs.getInt("expired"),
+	                    rs.getObject("nextExpiry", LocalDateTime.class));
 	        }
-	    } catch (SQLException e) {
-	        e.printStackTrace();
 	    }
-	    return false;
 	}
 	
-	// Marks the invitation code as used in the database.
-	private void markInvitationCodeAsUsed(String code) {
-	    String query = "UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ?";
-	    try (PreparedStatement pstmt = connection.prepareStatement(query)) {
+	// Redeems an invitation code: marks it used and returns true only if it was unused and not
+	// expired. A single conditional update, so two registrants can never both redeem the same code.
+	public boolean validateInvitationCode(String code) {
+	    String query = "UPDATE InvitationCodes SET isUsed = TRUE WHERE code = ? AND isUsed = FALSE AND expiresAt > ?";
+	    try (Connection connection = pool.getConnection()) {
+	        PreparedStatement pstmt = pool.prepare(connection, "validateInvitationCode", query);
 	        pstmt.setString(1, code);
-	        pstmt.executeUpdate();
+	        pstmt.setObject(2, LocalDateTime.now());
+	        return pstmt.executeUpdate() == 1;
 	    } catch (SQLException e) {
 	        e.printStackTrace();
 	    }
+	    return false;
 	}
 
-	// Closes the database connection and statement.
+	// Closes the pooled database connections; called when the application quits.
 	public void closeConnection() {
-		try{ 
-			if(statement!=null) statement.close(); 
-		} catch(SQLException se2) { 
-			se2.printStackTrace();
-		} 
-		try { 
-			if(connection!=null) connection.close(); 
-		} catch(SQLException se){ 
-			se.printStackTrace(); 
-		} 
+		if (invitationCodeSweeper != null) {
+			invitationCodeSweeper.close();
+			invitationCodeSweeper = null;
+		}
+		if (changeLogPruner != null) {
+			changeLogPruner.close();
+			changeLogPruner = null;
+		}
+		if (questionArchiver != null) {
+			questionArchiver.close();
+			questionArchiver = null;
+		}
+		if (backupService != null) {
+			backupService.close();
+			backupService = null;
+		}
+		if (pool != null) {
+			pool.shutdown();
+		}
 	}
 
 }
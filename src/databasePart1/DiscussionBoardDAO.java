@@ -2,94 +2,114 @@ package databasePart1;
 
 import java.sql.*;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import application.ChangeLogEntry;
+import application.ChangeLogEntry.Entity;
+import application.ChangeLogEntry.Operation;
+import application.ChangeSet;
 import application.Question;
 import application.Answer;
+import application.QuestionPage;
+import application.QuestionSummary;
+import application.QuestionSummaryPage;
+import application.QuestionWithAnswers;
 import application.Questions;
 import application.Answers;
 
 //data access object for the discussion board
 public class DiscussionBoardDAO {
-    private Connection connection;
-    private Statement statement;
+    //pool shared with DatabaseHelper, every operation borrows a connection from it
+    private final ConnectionPool pool;
+    //rows sent per JDBC batch by the bulk insert methods
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    //per pool, the change listener and the lock that orders commits for it
+    private static final Map<ConnectionPool, CommitOrder> commitOrders = new ConcurrentHashMap<>();
+    private final CommitOrder commitOrder;
+    //rows written so far by each open transaction, by its connection
+    private final Map<Connection, CommittedChanges> uncommitted = new ConcurrentHashMap<>();
+    //rows the driver fetches per round trip in the streaming scans
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+    private int fetchSize = DEFAULT_FETCH_SIZE;
 
-    //db credentials (from DatabaseHelper)
+    //full-text hits in the hot tables and in the archive tables, each mapped to their question
+    private static final String FULL_TEXT_MATCHES = fullTextMatches("QUESTIONS", "ANSWERS");
+    private static final String ARCHIVED_FULL_TEXT_MATCHES = fullTextMatches("ARCHIVED_QUESTIONS", "ARCHIVED_ANSWERS");
 
-    // JDBC driver name and database URL 
-	static final String JDBC_DRIVER = "org.h2.Driver";   
-	static final String DB_URL = "jdbc:h2:~/FoundationDatabase";  
+    //columns read for a question list row
+    private static final String SUMMARY_COLUMNS =
+            "questionId, title, authorUserName, createdAt, isAnswered, category, answerCount, acceptedAnswerId";
+    //every column of a question and of an answer, shared by the hot and archive tables
+    static final String QUESTION_COLUMNS = "questionId, title, content, authorUserName, createdAt, updatedAt, "
+            + "isAnswered, category, answerCount, acceptedAnswerId, version";
+    static final String ANSWER_COLUMNS =
+            "answerId, questionId, content, authorUserName, createdAt, updatedAt, isAccepted, version";
 
-	//  Database credentials 
-	static final String USER = "sa"; 
-	static final String PASS = ""; 
+    //recompute the denormalized answer columns of one question from the answers table
+    private static final String RECOUNT_ANSWERS = "UPDATE questions q SET "
+            + "answerCount = (SELECT COUNT(*) FROM answers a WHERE a.questionId = q.questionId), "
+            + "acceptedAnswerId = (SELECT MAX(a.answerId) FROM answers a WHERE a.questionId = q.questionId AND a.isAccepted) "
+            + "WHERE q.questionId = ?";
 
     //constructor
     public DiscussionBoardDAO() throws SQLException {
-        connectToDatabase();
+        this(ConnectionPool.getShared());
     }
-    //connect to db 
-    private void connectToDatabase() throws SQLException {
-        try {
-            Class.forName(JDBC_DRIVER);
-            connection = DriverManager.getConnection(DB_URL, USER, PASS);
-            statement = connection.createStatement();
-            createTables();
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("Failed to connect to the database", e);
-        }
-    }
-    //create the tables
-    private void createTables() throws SQLException {
-        //questions table.
-        String questionsTable = "CREATE TABLE IF NOT EXISTS questions(" +
-        "questionId INT AUTO_INCREMENT PRIMARY KEY," +
-        "title VARCHAR(255) NOT NULL," +
-        "content TEXT NOT NULL," +
-        "authorUserName VARCHAR(255) NOT NULL," +
-        "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-        "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-        "isAnswered BOOLEAN DEFAULT FALSE," +
-        "category VARCHAR(100))";
-        statement.execute(questionsTable);
-    
-    //answers table.
-    String answersTable = "CREATE TABLE IF NOT EXISTS answers(" +
-    "answerId INT AUTO_INCREMENT PRIMARY KEY," +
-    "questionId INT NOT NULL," +
-    "content TEXT NOT NULL," +
-    "authorUserName VARCHAR(255) NOT NULL," +
-    "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-    "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP," +
-    "isAccepted BOOLEAN DEFAULT FALSE," +
-    "FOREIGN KEY (questionId) REFERENCES questions(questionId))";
-
-    statement.execute(answersTable);
+    //constructor for a specific pool
+    public DiscussionBoardDAO(ConnectionPool pool) throws SQLException {
+        this.pool = pool;
+        this.commitOrder = commitOrders.computeIfAbsent(pool, p -> new CommitOrder());
+        SchemaMigrator.migrate(pool);
     }
-    //insert a question 
+    //insert a question, logging it in the same transaction
     public int createQuestion(Question question) throws SQLException {
-        String sql = "INSERT INTO questions (title, content, authorUserName, category) VALUES (?, ?, ?, ?)";
-        try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+        String sql = "INSERT INTO questions (title, content, authorUserName, createdAt, updatedAt, isAnswered, category) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        int generatedId = inTransaction(connection -> {
+            PreparedStatement pstmt = pool.prepareReturningKeys(connection, "createQuestion", sql);
             pstmt.setString(1, question.getTitle());
             pstmt.setString(2, question.getContent());
             pstmt.setString(3, question.getAuthorUserName());
-            pstmt.setString(4, question.getCategory());
+            pstmt.setTimestamp(4, Timestamp.valueOf(stored(question.getCreatedAt())));
+            pstmt.setTimestamp(5, Timestamp.valueOf(stored(question.getUpdatedAt())));
+            pstmt.setBoolean(6, question.getIsAnswered());
+            pstmt.setString(7, question.getCategory());
             pstmt.executeUpdate();
             //return the question id
-            ResultSet rs = pstmt.getGeneratedKeys();
-            if (rs.next()) {
-                int generatedId = rs.getInt(1);
-                question.setQuestionId(generatedId);
-                return generatedId;
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                int id = rs.getInt(1);
+                logChange(connection, Entity.QUESTION, Operation.INSERT, id, id);
+                written(connection).questionInserted(question, id);
+                return id;
             }
+        });
+        if (generatedId != -1) {
+            question.setQuestionId(generatedId);
         }
-            return -1;
+        return generatedId;
         }
         //get all questions
         public Questions getAllQuestions() throws SQLException {
             Questions questions = new Questions();
             String sql = "SELECT * FROM questions ORDER BY createdAt DESC";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql);
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(sql);
                  ResultSet rs = pstmt.executeQuery()) {
                 
                 while (rs.next()) {
@@ -99,80 +119,419 @@ public class DiscussionBoardDAO {
             }
             return questions;
         }
+        //stream every question in id order, reading rows only as the stream is consumed;
+        //the stream holds a pooled connection until it is closed, so use it in try-with-resources
+        public Stream<Question> streamQuestions() throws SQLException {
+            return streamRows("SELECT * FROM questions ORDER BY questionId", this::extractQuestionFromResultSet);
+        }
+        //get one page of questions, newest first, starting after the cursor (null for the first page)
+        public QuestionPage getQuestionPage(QuestionPage.Cursor after, int pageSize) throws SQLException {
+            return findQuestions(new QuestionQuery().limit(pageSize), after);
+        }
+        //get the questions matching the query, newest first, starting after the cursor (null for the first page)
+        public QuestionPage findQuestions(QuestionQuery query, QuestionPage.Cursor after) throws SQLException {
+            List<Object> params = new ArrayList<>();
+            String sql = questionListSql("*", query, after, params);
+            List<Question> questions = new ArrayList<>();
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "findQuestions" + listShape(query, after), sql);
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        questions.add(extractQuestionFromResultSet(rs));
+                    }
+                }
+            }
+            boolean hasMore = questions.size() > query.getLimit();
+            if (hasMore) {
+                questions.remove(query.getLimit());
+            }
+            return new QuestionPage(questions, hasMore);
+        }
+        //same listing as findQuestions but only the columns a list row shows, leaving the content unread
+        public QuestionSummaryPage findQuestionSummaries(QuestionQuery query, QuestionPage.Cursor after) throws SQLException {
+            List<Object> params = new ArrayList<>();
+            String sql = questionListSql(SUMMARY_COLUMNS, query, after, params);
+            List<QuestionSummary> summaries = new ArrayList<>();
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "findQuestionSummaries" + listShape(query, after), sql);
+                for (int i = 0; i < params.size(); i++) {
+                    pstmt.setObject(i + 1, params.get(i));
+                }
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        summaries.add(extractQuestionSummaryFromResultSet(rs));
+                    }
+                }
+            }
+            boolean hasMore = summaries.size() > query.getLimit();
+            if (hasMore) {
+                summaries.remove(query.getLimit());
+            }
+            return new QuestionSummaryPage(summaries, hasMore);
+        }
+        //search the full-text index and return matching question ids, best match first
+        public List<Integer> searchQuestionIds(String text, int limit) throws SQLException {
+            String sql = "SELECT questionId, SUM(weight) AS rank FROM (" + FULL_TEXT_MATCHES + ") m "
+                    + "GROUP BY questionId ORDER BY rank DESC, questionId DESC LIMIT ?";
+            List<Integer> ids = new ArrayList<>();
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "searchQuestionIds", sql);
+                pstmt.setString(1, text);
+                pstmt.setInt(2, limit);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        ids.add(rs.getInt("questionId"));
+                    }
+                }
+            }
+            return ids;
+        }
         //get question by id
         public Question getQuestionById(int questionId) throws SQLException {
             String sql = "SELECT * FROM questions WHERE questionId = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "getQuestionById", sql);
                 pstmt.setInt(1, questionId);
-                ResultSet rs = pstmt.executeQuery();
-                if (rs.next()) {
-                    return extractQuestionFromResultSet(rs);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs.next()) {
+                        return extractQuestionFromResultSet(rs);
+                    }
                 }
             }
             return null;
         }
-        //update a question
+        //get a question and all of its answers in one joined query, looking in the archive only if it isn't
+        //on the board; null if the question doesn't exist in either
+        public QuestionWithAnswers getQuestionWithAnswers(int questionId) throws SQLException {
+            QuestionWithAnswers hot = getQuestionWithAnswers(questionId, "questions", "answers");
+            return hot != null ? hot : getQuestionWithAnswers(questionId, "archived_questions", "archived_answers");
+        }
+        //the joined question and answers lookup against one pair of tables
+        private QuestionWithAnswers getQuestionWithAnswers(int questionId, String questionTable, String answerTable)
+                throws SQLException {
+            String sql = "SELECT " + qualified("q", QUESTION_COLUMNS) + ", a.answerId AS a_answerId, a.content AS a_content, "
+                    + "a.authorUserName AS a_authorUserName, a.createdAt AS a_createdAt, "
+                    + "a.updatedAt AS a_updatedAt, a.isAccepted AS a_isAccepted, a.version AS a_version "
+                    + "FROM " + questionTable + " q LEFT JOIN " + answerTable + " a ON a.questionId = q.questionId "
+                    + "WHERE q.questionId = ? ORDER BY a.isAccepted DESC, a.createdAt ASC";
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "getQuestionWithAnswers." + questionTable, sql);
+                pstmt.setInt(1, questionId);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    Question question = null;
+                    Answers answers = new Answers();
+                    while (rs.next()) {
+                        if (question == null) {
+                            question = extractQuestionFromResultSet(rs);
+                        }
+                        //a question with no answers comes back as one row of NULL answer columns
+                        int answerId = rs.getInt("a_answerId");
+                        if (!rs.wasNull()) {
+                            Answer answer = new Answer(
+                                answerId,
+                                questionId,
+                                rs.getString("a_content"),
+                                rs.getString("a_authorUserName"),
+                                rs.getTimestamp("a_createdAt").toLocalDateTime(),
+                                rs.getTimestamp("a_updatedAt").toLocalDateTime(),
+                                rs.getBoolean("a_isAccepted")
+                            );
+                            answer.setVersion(rs.getInt("a_version"));
+                            answers.addAnswer(answer);
+                        }
+                    }
+                    return question == null ? null : new QuestionWithAnswers(question, answers);
+                }
+            }
+        }
+        //the given questions that are on the board, by id, each with its answers accepted first then oldest first,
+        //read on a connection the caller holds; two queries however many ids, for bringing BoardReadModel up to date
+        List<QuestionWithAnswers> getQuestionsWithAnswers(Connection connection, Collection<Integer> questionIds)
+                throws SQLException {
+            List<QuestionWithAnswers> result = new ArrayList<>();
+            if (questionIds.isEmpty()) {
+                return result;
+            }
+            Array idArray = connection.createArrayOf("INTEGER", questionIds.toArray());
+            try {
+                Map<Integer, Answers> answersById = new HashMap<>();
+                PreparedStatement questions = pool.prepare(connection, "getQuestionsWithAnswers.questions",
+                        "SELECT * FROM questions WHERE questionId = ANY(?) ORDER BY questionId");
+                questions.setArray(1, idArray);
+                try (ResultSet rs = questions.executeQuery()) {
+                    while (rs.next()) {
+                        Question question = extractQuestionFromResultSet(rs);
+                        Answers answers = new Answers();
+                        answersById.put(question.getQuestionId(), answers);
+                        result.add(new QuestionWithAnswers(question, answers));
+                    }
+                }
+                PreparedStatement answers = pool.prepare(connection, "getQuestionsWithAnswers.answers",
+                        "SELECT * FROM answers WHERE questionId = ANY(?) ORDER BY questionId, isAccepted DESC, createdAt");
+                answers.setArray(1, idArray);
+                try (ResultSet rs = answers.executeQuery()) {
+                    while (rs.next()) {
+                        Answer answer = extractAnswerFromResultSet(rs);
+                        //an answer added after its question was read waits for the next reload
+                        Answers forQuestion = answersById.get(answer.getQuestionId());
+                        if (forQuestion != null) {
+                            forQuestion.addAnswer(answer);
+                        }
+                    }
+                }
+            } finally {
+                idArray.free();
+            }
+            return result;
+        }
+        //insert many questions in one transaction, returning their ids in the same order
+        public List<Integer> createQuestions(List<Question> questions) throws SQLException {
+            String sql = "INSERT INTO questions (title, content, authorUserName, createdAt, updatedAt, isAnswered, category) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+            return insertInBatches(sql, questions, (pstmt, q) -> {
+                pstmt.setString(1, q.getTitle());
+                pstmt.setString(2, q.getContent());
+                pstmt.setString(3, q.getAuthorUserName());
+                pstmt.setTimestamp(4, Timestamp.valueOf(stored(q.getCreatedAt())));
+                pstmt.setTimestamp(5, Timestamp.valueOf(stored(q.getUpdatedAt())));
+                pstmt.setBoolean(6, q.getIsAnswered());
+                pstmt.setString(7, q.getCategory());
+            }, Question::setQuestionId, (connection, ids) -> {
+                logChanges(connection, Entity.QUESTION, Operation.INSERT, ids, ids);
+                CommittedChanges written = written(connection);
+                for (int i = 0; i < ids.size(); i++) {
+                    written.questionInserted(questions.get(i), ids.get(i));
+                }
+            });
+        }
+        //update a question if nobody else has since its version was read; false if it no longer exists,
+        //StaleUpdateException if it was changed. On success the question carries the new version
         public boolean updateQuestion(Question question) throws SQLException {
+            int version = inTransaction(connection -> updateQuestion(connection, question));
+            if (version < 0) {
+                return false;
+            }
+            question.setVersion(version);
+            return true;
+        }
+        //compare-and-set update of a question on a connection the caller holds, returning the new version or
+        //-1 if it no longer exists; the question itself is left alone until the caller knows the write committed
+        int updateQuestion(Connection connection, Question question) throws SQLException {
             String sql = "UPDATE questions SET title = ?, content = ?, updatedAt = ?, "
-                    + "isAnswered = ?, category = ? WHERE questionId = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, question.getTitle());
-                pstmt.setString(2, question.getContent());
-                pstmt.setTimestamp(3, Timestamp.valueOf(LocalDateTime.now()));
-                pstmt.setBoolean(4, question.getIsAnswered());
-                pstmt.setString(5, question.getCategory());
-                pstmt.setInt(6, question.getQuestionId());
-                return pstmt.executeUpdate() > 0;
-            }
-        }
-        //delete a question
+                    + "isAnswered = ?, category = ?, version = version + 1 WHERE questionId = ? AND version = ?";
+            PreparedStatement pstmt = pool.prepare(connection, "updateQuestion", sql);
+            LocalDateTime now = stored(LocalDateTime.now());
+            pstmt.setString(1, question.getTitle());
+            pstmt.setString(2, question.getContent());
+            pstmt.setTimestamp(3, Timestamp.valueOf(now));
+            pstmt.setBoolean(4, question.getIsAnswered());
+            pstmt.setString(5, question.getCategory());
+            pstmt.setInt(6, question.getQuestionId());
+            pstmt.setInt(7, question.getVersion());
+            if (pstmt.executeUpdate() > 0) {
+                logChange(connection, Entity.QUESTION, Operation.UPDATE, question.getQuestionId(), question.getQuestionId());
+                written(connection).questionUpdated(question, now, question.getVersion() + 1);
+                return question.getVersion() + 1;
+            }
+            return staleOrMissing(connection, "question", question.getQuestionId(), question.getVersion(),
+                    "SELECT version FROM questions WHERE questionId = ?");
+        }
+        //delete a question, its answers go with it
         public boolean deleteQuestion(int questionId) throws SQLException {
             String sql = "DELETE FROM questions WHERE questionId = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            return inTransaction(connection -> {
+                PreparedStatement pstmt = pool.prepare(connection, "deleteQuestion", sql);
                 pstmt.setInt(1, questionId);
-                return pstmt.executeUpdate() > 0;
+                if (pstmt.executeUpdate() == 0) {
+                    return false;
+                }
+                logChange(connection, Entity.QUESTION, Operation.DELETE, questionId, questionId);
+                written(connection).questionRemoved(questionId);
+                return true;
+            });
+        }
+        //progress callback for purgeQuestions, called after each committed chunk with the running totals
+        public interface PurgeProgress {
+            void chunkPurged(int questionsPurged, int answersPurged);
+        }
+        //delete every question matching the criteria together with its answers, returning how many questions went
+        public int purgeQuestions(PurgeCriteria criteria) throws SQLException {
+            return purgeQuestions(criteria, null);
+        }
+        //delete matching questions in chunks, one short transaction per chunk, reporting progress after each
+        public int purgeQuestions(PurgeCriteria criteria, PurgeProgress progress) throws SQLException {
+            if (criteria.isEmpty()) {
+                throw new IllegalArgumentException("Purge criteria must name an author, category or cutoff");
             }
+            StringBuilder sql = new StringBuilder("SELECT questionId FROM questions WHERE questionId > ?");
+            List<Object> params = new ArrayList<>();
+            if (criteria.getAuthorUserName() != null) {
+                sql.append(" AND authorUserName = ?");
+                params.add(criteria.getAuthorUserName());
+            }
+            if (criteria.getCategory() != null) {
+                sql.append(" AND category = ?");
+                params.add(criteria.getCategory());
+            }
+            if (criteria.getCreatedBefore() != null) {
+                sql.append(" AND createdAt < ?");
+                params.add(Timestamp.valueOf(criteria.getCreatedBefore()));
+            }
+            //walk forward by id so each chunk starts where the last one ended
+            sql.append(" ORDER BY questionId LIMIT ?");
+            String name = "purgeQuestions["
+                    + (criteria.getAuthorUserName() != null ? "U" : "")
+                    + (criteria.getCategory() != null ? "C" : "")
+                    + (criteria.getCreatedBefore() != null ? "B" : "") + "]";
+
+            int questionsPurged = 0;
+            int answersPurged = 0;
+            int lastId = 0;
+            while (true) {
+                int after = lastId;
+                //{questions deleted, answers deleted, last id in the chunk}, or null when nothing is left
+                int[] chunk = inTransaction(connection -> {
+                    PreparedStatement select = pool.prepare(connection, name, sql.toString());
+                    select.setInt(1, after);
+                    for (int i = 0; i < params.size(); i++) {
+                        select.setObject(i + 2, params.get(i));
+                    }
+                    select.setInt(params.size() + 2, criteria.getChunkSize());
+                    List<Integer> ids = new ArrayList<>();
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                    if (ids.isEmpty()) {
+                        return null;
+                    }
+                    Array idArray = connection.createArrayOf("INTEGER", ids.toArray());
+                    try {
+                        //count the answers first; the cascade removes them with their question
+                        PreparedStatement count = pool.prepare(connection, "purgeQuestions.answers",
+                                "SELECT COUNT(*) FROM answers WHERE questionId = ANY(?)");
+                        count.setArray(1, idArray);
+                        int answers;
+                        try (ResultSet rs = count.executeQuery()) {
+                            rs.next();
+                            answers = rs.getInt(1);
+                        }
+                        PreparedStatement delete = pool.prepare(connection, "purgeQuestions.delete",
+                                "DELETE FROM questions WHERE questionId = ANY(?)");
+                        delete.setArray(1, idArray);
+                        int questions = delete.executeUpdate();
+                        logChanges(connection, Entity.QUESTION, Operation.DELETE, ids, ids);
+                        removed(connection, ids);
+                        return new int[] { questions, answers, ids.get(ids.size() - 1) };
+                    } finally {
+                        idArray.free();
+                    }
+                });
+                if (chunk == null) {
+                    break;
+                }
+                questionsPurged += chunk[0];
+                answersPurged += chunk[1];
+                lastId = chunk[2];
+                if (progress != null) {
+                    progress.chunkPurged(questionsPurged, answersPurged);
+                }
+            }
+            return questionsPurged;
         }
 
         //ANSWER CRUD OPERATIONS
 
-        //insert an answer
+        //insert an answer, bumping the question's answer count in the same transaction
         public int createAnswer(Answer answer) throws SQLException {
+            int generatedId = inTransaction(connection -> createAnswer(connection, answer));
+            if (generatedId != -1) {
+                answer.setAnswerId(generatedId);
+            }
+            return generatedId;
+        }
+        //insert an answer inside the caller's transaction, returning its id without setting it on the answer
+        int createAnswer(Connection connection, Answer answer) throws SQLException {
             String sql = "INSERT INTO answers (questionId, content, authorUserName, createdAt, updatedAt, isAccepted) "
                     + "VALUES (?, ?, ?, ?, ?, ?)";
+            PreparedStatement pstmt = pool.prepareReturningKeys(connection, "createAnswer", sql);
+            pstmt.setInt(1, answer.getQuestionId());
+            pstmt.setString(2, answer.getContent());
+            pstmt.setString(3, answer.getAuthorUserName()); 
+            pstmt.setTimestamp(4, Timestamp.valueOf(stored(answer.getCreatedAt())));
+            pstmt.setTimestamp(5, Timestamp.valueOf(stored(answer.getUpdatedAt())));
+            pstmt.setBoolean(6, answer.getIsAccepted());
             
-            try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setInt(1, answer.getQuestionId());
-                pstmt.setString(2, answer.getContent());
-                pstmt.setString(3, answer.getAuthorUserName()); 
-                pstmt.setTimestamp(4, Timestamp.valueOf(answer.getCreatedAt()));
-                pstmt.setTimestamp(5, Timestamp.valueOf(answer.getUpdatedAt()));
-                pstmt.setBoolean(6, answer.getIsAccepted());
-                
-                pstmt.executeUpdate();
-                
-                // generate answerId
-                ResultSet rs = pstmt.getGeneratedKeys();
+            pstmt.executeUpdate();
+            
+            // generate answerId
+            int id = -1;
+            try (ResultSet rs = pstmt.getGeneratedKeys()) {
                 if (rs.next()) {
-                    int generatedId = rs.getInt(1);
-                    answer.setAnswerId(generatedId);
-                    return generatedId;
+                    id = rs.getInt(1);
                 }
             }
-            return -1;
+            PreparedStatement counts = pool.prepare(connection, "createAnswer.counts",
+                    "UPDATE questions SET answerCount = answerCount + 1, "
+                    + "acceptedAnswerId = CASE WHEN ? THEN ? ELSE acceptedAnswerId END WHERE questionId = ?");
+            counts.setBoolean(1, answer.getIsAccepted());
+            counts.setInt(2, id);
+            counts.setInt(3, answer.getQuestionId());
+            counts.executeUpdate();
+            logChange(connection, Entity.ANSWER, Operation.INSERT, id, answer.getQuestionId());
+            written(connection).answerInserted(answer, id);
+            return id;
+        }
+        //insert many answers in one transaction, returning their ids in the same order
+        public List<Integer> createAnswers(List<Answer> answers) throws SQLException {
+            String sql = "INSERT INTO answers (questionId, content, authorUserName, createdAt, updatedAt, isAccepted) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+            return insertInBatches(sql, answers, (pstmt, a) -> {
+                pstmt.setInt(1, a.getQuestionId());
+                pstmt.setString(2, a.getContent());
+                pstmt.setString(3, a.getAuthorUserName());
+                pstmt.setTimestamp(4, Timestamp.valueOf(stored(a.getCreatedAt())));
+                pstmt.setTimestamp(5, Timestamp.valueOf(stored(a.getUpdatedAt())));
+                pstmt.setBoolean(6, a.getIsAccepted());
+            }, Answer::setAnswerId, (connection, ids) -> {
+                //recount once per touched question rather than once per answer
+                Set<Integer> questionIds = new LinkedHashSet<>();
+                List<Integer> answerQuestionIds = new ArrayList<>(answers.size());
+                for (Answer a : answers) {
+                    questionIds.add(a.getQuestionId());
+                    answerQuestionIds.add(a.getQuestionId());
+                }
+                try (PreparedStatement recount = connection.prepareStatement(RECOUNT_ANSWERS)) {
+                    for (int questionId : questionIds) {
+                        recount.setInt(1, questionId);
+                        recount.addBatch();
+                    }
+                    recount.executeBatch();
+                }
+                logChanges(connection, Entity.ANSWER, Operation.INSERT, ids, answerQuestionIds);
+                CommittedChanges written = written(connection);
+                for (int i = 0; i < ids.size(); i++) {
+                    written.answerInserted(answers.get(i), ids.get(i));
+                }
+            });
         }
         //get all answers for a question
         public Answers getAnswersForQuestion(int questionId) throws SQLException {
             Answers answers = new Answers();
             String sql = "SELECT * FROM answers WHERE questionId = ? ORDER BY isAccepted DESC, createdAt ASC";
             
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "getAnswersForQuestion", sql);
                 pstmt.setInt(1, questionId);
-                ResultSet rs = pstmt.executeQuery();
-                
-                while (rs.next()) {
-                    Answer a = extractAnswerFromResultSet(rs);
-                    answers.addAnswer(a);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        Answer a = extractAnswerFromResultSet(rs);
+                        answers.addAnswer(a);
+                    }
                 }
             }
             return answers;
@@ -181,7 +540,8 @@ public class DiscussionBoardDAO {
         public Answers getAllAnswers() throws SQLException {
             Answers answers = new Answers();
             String sql = "SELECT * FROM answers ORDER BY createdAt DESC";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql);
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement pstmt = connection.prepareStatement(sql);
                  ResultSet rs = pstmt.executeQuery()) {
                 while (rs.next()) {
                     Answer a = extractAnswerFromResultSet(rs);
@@ -190,28 +550,573 @@ public class DiscussionBoardDAO {
             }
             return answers;
         }
-        //update an answer
+        //stream every answer in id order, reading rows only as the stream is consumed; close it when done
+        public Stream<Answer> streamAnswers() throws SQLException {
+            return streamRows("SELECT * FROM answers ORDER BY answerId", this::extractAnswerFromResultSet);
+        }
+        //update an answer if nobody else has since its version was read, keeping the question's accepted answer
+        //in step; false if it no longer exists, StaleUpdateException if it was changed
         public boolean updateAnswer(Answer answer) throws SQLException {
-            String sql = "UPDATE answers SET content = ?, updatedAt = ?, isAccepted = ? WHERE answerId = ?";
+            int version = inTransaction(connection -> updateAnswer(connection, answer));
+            if (version < 0) {
+                return false;
+            }
+            answer.setVersion(version);
+            return true;
+        }
+        //compare-and-set update of an answer inside the caller's transaction, returning the new version or -1
+        int updateAnswer(Connection connection, Answer answer) throws SQLException {
+            String sql = "UPDATE answers SET content = ?, updatedAt = ?, isAccepted = ?, version = version + 1 "
+                    + "WHERE answerId = ? AND version = ?";
+            PreparedStatement pstmt = pool.prepare(connection, "updateAnswer", sql);
+            LocalDateTime now = stored(LocalDateTime.now());
+            pstmt.setString(1, answer.getContent());
+            pstmt.setTimestamp(2, Timestamp.valueOf(now));
+            pstmt.setBoolean(3, answer.getIsAccepted());
+            pstmt.setInt(4, answer.getAnswerId());
+            pstmt.setInt(5, answer.getVersion());
             
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setString(1, answer.getContent());
-                pstmt.setTimestamp(2, Timestamp.valueOf(LocalDateTime.now()));
-                pstmt.setBoolean(3, answer.getIsAccepted());
-                pstmt.setInt(4, answer.getAnswerId());
-                
-                return pstmt.executeUpdate() > 0;
+            if (pstmt.executeUpdate() == 0) {
+                return staleOrMissing(connection, "answer", answer.getAnswerId(), answer.getVersion(),
+                        "SELECT version FROM answers WHERE answerId = ?");
             }
+            //accepting points the question at this answer; un-accepting clears it if it pointed here
+            PreparedStatement accepted = pool.prepare(connection, "updateAnswer.accepted",
+                    "UPDATE questions SET acceptedAnswerId = CASE WHEN ? THEN ? "
+                    + "WHEN acceptedAnswerId = ? THEN NULL ELSE acceptedAnswerId END "
+                    + "WHERE questionId = (SELECT questionId FROM answers WHERE answerId = ?)");
+            accepted.setBoolean(1, answer.getIsAccepted());
+            accepted.setInt(2, answer.getAnswerId());
+            accepted.setInt(3, answer.getAnswerId());
+            accepted.setInt(4, answer.getAnswerId());
+            accepted.executeUpdate();
+            logChange(connection, Entity.ANSWER, Operation.UPDATE, answer.getAnswerId(), answer.getQuestionId());
+            written(connection).answerUpdated(answer, now, answer.getVersion() + 1);
+            return answer.getVersion() + 1;
         }
-        //delete an answer
+        //after a compare-and-set matched no row: -1 if the row is gone, otherwise it moved on to a newer version
+        private int staleOrMissing(Connection connection, String entity, int id, int expectedVersion, String versionSql)
+                throws SQLException {
+            PreparedStatement pstmt = pool.prepare(connection, "currentVersion." + entity, versionSql);
+            pstmt.setInt(1, id);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return -1;
+                }
+                throw new StaleUpdateException(entity, id, expectedVersion, rs.getInt(1));
+            }
+        }
+        //delete an answer, decrementing the question's answer count in the same transaction
         public boolean deleteAnswer(int answerId) throws SQLException {
-            String sql = "DELETE FROM answers WHERE answerId = ?";
-            try (PreparedStatement pstmt = connection.prepareStatement(sql)) {
-                pstmt.setInt(1, answerId);
-                return pstmt.executeUpdate() > 0;
+            return inTransaction(connection -> deleteAnswer(connection, answerId));
+        }
+        //delete an answer inside the caller's transaction
+        boolean deleteAnswer(Connection connection, int answerId) throws SQLException {
+            PreparedStatement lookup = pool.prepare(connection, "deleteAnswer.question",
+                    "SELECT questionId FROM answers WHERE answerId = ?");
+            lookup.setInt(1, answerId);
+            int questionId;
+            try (ResultSet rs = lookup.executeQuery()) {
+                if (!rs.next()) {
+                    return false;
+                }
+                questionId = rs.getInt(1);
+            }
+            PreparedStatement pstmt = pool.prepare(connection, "deleteAnswer", "DELETE FROM answers WHERE answerId = ?");
+            pstmt.setInt(1, answerId);
+            if (pstmt.executeUpdate() == 0) {
+                return false;
+            }
+            PreparedStatement counts = pool.prepare(connection, "deleteAnswer.counts",
+                    "UPDATE questions SET answerCount = GREATEST(answerCount - 1, 0), "
+                    + "acceptedAnswerId = CASE WHEN acceptedAnswerId = ? THEN NULL ELSE acceptedAnswerId END "
+                    + "WHERE questionId = ?");
+            counts.setInt(1, answerId);
+            counts.setInt(2, questionId);
+            counts.executeUpdate();
+            logChange(connection, Entity.ANSWER, Operation.DELETE, answerId, questionId);
+            written(connection).answerDeleted(answerId, questionId);
+            return true;
+        }
+
+        //ARCHIVAL
+
+        //move questions created before the cutoff, with their answers, to the archive tables in transactions of
+        //at most batchSize questions, returning how many moved. Archived questions drop out of the board's
+        //listings but stay readable through getQuestionWithAnswers and queries that include the archive
+        public int archiveQuestions(LocalDateTime createdBefore, int batchSize) throws SQLException {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1");
+            }
+            int archived = 0;
+            while (true) {
+                int moved = inTransaction(connection -> {
+                    //locked so an edit can't commit between copying a question and deleting it
+                    PreparedStatement select = pool.prepare(connection, "archiveQuestions.select",
+                            "SELECT questionId FROM questions WHERE createdAt < ? "
+                            + "ORDER BY createdAt, questionId LIMIT ? FOR UPDATE");
+                    select.setTimestamp(1, Timestamp.valueOf(createdBefore));
+                    select.setInt(2, batchSize);
+                    List<Integer> ids = new ArrayList<>();
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getInt(1));
+                        }
+                    }
+                    if (ids.isEmpty()) {
+                        return 0;
+                    }
+                    Array idArray = connection.createArrayOf("INTEGER", ids.toArray());
+                    try {
+                        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+                        PreparedStatement questions = pool.prepare(connection, "archiveQuestions.questions",
+                                "INSERT INTO archived_questions (" + QUESTION_COLUMNS + ", archivedAt) "
+                                + "SELECT " + QUESTION_COLUMNS + ", ? FROM questions WHERE questionId = ANY(?)");
+                        questions.setTimestamp(1, now);
+                        questions.setArray(2, idArray);
+                        questions.executeUpdate();
+                        PreparedStatement answers = pool.prepare(connection, "archiveQuestions.answers",
+                                "INSERT INTO archived_answers (" + ANSWER_COLUMNS + ", archivedAt) "
+                                + "SELECT " + ANSWER_COLUMNS + ", ? FROM answers WHERE questionId = ANY(?)");
+                        answers.setTimestamp(1, now);
+                        answers.setArray(2, idArray);
+                        answers.executeUpdate();
+                        //the cascade takes the answers out of the hot table with their question
+                        PreparedStatement delete = pool.prepare(connection, "archiveQuestions.delete",
+                                "DELETE FROM questions WHERE questionId = ANY(?)");
+                        delete.setArray(1, idArray);
+                        delete.executeUpdate();
+                        logChanges(connection, Entity.QUESTION, Operation.ARCHIVE, ids, ids);
+                        removed(connection, ids);
+                        return ids.size();
+                    } finally {
+                        idArray.free();
+                    }
+                });
+                if (moved == 0) {
+                    break;
+                }
+                archived += moved;
+            }
+            return archived;
+        }
+
+        //CHANGE LOG
+
+        //changes committed after seq, oldest first and at most limit of them
+        public ChangeSet changesSince(long seq, int limit) throws SQLException {
+            try (Connection connection = pool.getConnection()) {
+                return changesSince(connection, seq, limit);
+            }
+        }
+        //changesSince on a connection the caller holds
+        ChangeSet changesSince(Connection connection, long seq, int limit) throws SQLException {
+            if (limit < 1) {
+                throw new IllegalArgumentException("Limit must be at least 1");
+            }
+            PreparedStatement select = pool.prepare(connection, "changesSince",
+                    "SELECT * FROM change_log WHERE seq > ? ORDER BY seq LIMIT ?");
+            select.setLong(1, seq);
+            //one extra row tells whether more follow
+            select.setInt(2, limit + 1);
+            List<ChangeLogEntry> entries = new ArrayList<>();
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    entries.add(extractChangeFromResultSet(rs));
+                }
+            }
+            boolean hasMore = entries.size() > limit;
+            if (hasMore) {
+                entries.remove(entries.size() - 1);
+            }
+            //checked after reading, so entries pruned while reading are noticed too
+            PreparedStatement bounds = pool.prepare(connection, "changesSince.bounds",
+                    "SELECT s.seq, (SELECT MIN(seq) FROM change_log) FROM change_log_sequence s WHERE s.id = 1");
+            boolean resyncRequired;
+            try (ResultSet rs = bounds.executeQuery()) {
+                rs.next();
+                long latest = rs.getLong(1);
+                long oldest = rs.getLong(2);
+                //everything up to the oldest retained entry, or all of it once the log is empty, was pruned
+                long prunedThrough = rs.wasNull() ? latest : oldest - 1;
+                resyncRequired = seq < prunedThrough;
+            }
+            return new ChangeSet(entries, seq, hasMore, resyncRequired);
+        }
+        //sequence number of the latest committed change, 0 if nothing has changed yet
+        public long getLatestChangeSeq() throws SQLException {
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement pstmt = pool.prepare(connection, "getLatestChangeSeq",
+                        "SELECT seq FROM change_log_sequence WHERE id = 1");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getLong(1) : 0;
+                }
             }
         }
+        //delete change log entries older than the cutoff, oldest first, at most batchSize per transaction;
+        //clients behind the pruned entries are told to resync by changesSince
+        public int pruneChangeLog(LocalDateTime olderThan, int batchSize) throws SQLException {
+            long through;
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement cutoff = pool.prepare(connection, "pruneChangeLog.cutoff",
+                        "SELECT MAX(seq) FROM change_log WHERE changedAt < ?");
+                cutoff.setTimestamp(1, Timestamp.valueOf(olderThan));
+                try (ResultSet rs = cutoff.executeQuery()) {
+                    rs.next();
+                    through = rs.getLong(1);
+                    if (rs.wasNull()) {
+                        return 0;
+                    }
+                }
+            }
+            //delete by sequence so the retained log is always an unbroken run up to the latest change
+            int total = 0;
+            int deleted;
+            do {
+                deleted = inTransaction(connection -> {
+                    PreparedStatement delete = pool.prepare(connection, "pruneChangeLog",
+                            "DELETE FROM change_log WHERE seq IN "
+                            + "(SELECT seq FROM change_log WHERE seq <= ? ORDER BY seq LIMIT ?)");
+                    delete.setLong(1, through);
+                    delete.setInt(2, batchSize);
+                    return delete.executeUpdate();
+                });
+                total += deleted;
+            } while (deleted == batchSize);
+            return total;
+        }
+        //record one change in the caller's transaction
+        private void logChange(Connection connection, Entity entity, Operation operation, int entityId, int questionId)
+                throws SQLException {
+            logChanges(connection, entity, operation, List.of(entityId), List.of(questionId));
+        }
+        //record changes in the caller's transaction under a block of new sequence numbers. Taking the block
+        //locks the sequence row until the transaction ends, so numbers are handed out in commit order and a
+        //client that has seen seq n never later finds a change below n; call it last so the lock is brief
+        void logChanges(Connection connection, Entity entity, Operation operation, List<Integer> entityIds,
+                                List<Integer> questionIds) throws SQLException {
+            if (entityIds.isEmpty()) {
+                return;
+            }
+            PreparedStatement reserve = pool.prepare(connection, "changeLog.reserve",
+                    "SELECT seq FROM FINAL TABLE (UPDATE change_log_sequence SET seq = seq + ? WHERE id = 1)");
+            reserve.setInt(1, entityIds.size());
+            long seq;
+            try (ResultSet rs = reserve.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Change log sequence row is missing");
+                }
+                seq = rs.getLong(1) - entityIds.size();
+            }
+            PreparedStatement insert = pool.prepare(connection, "changeLog.insert",
+                    "INSERT INTO change_log (seq, entity, entityId, questionId, operation, changedAt) VALUES (?, ?, ?, ?, ?, ?)");
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            for (int i = 0; i < entityIds.size(); i++) {
+                insert.setLong(1, ++seq);
+                insert.setString(2, entity.name());
+                insert.setInt(3, entityIds.get(i));
+                insert.setInt(4, questionIds.get(i));
+                insert.setString(5, operation.name());
+                insert.setTimestamp(6, now);
+                insert.addBatch();
+                if ((i + 1) % batchSize == 0) {
+                    insert.executeBatch();
+                }
+            }
+            insert.executeBatch();
+        }
+        //told what each write transaction on a pool wrote once it has committed, on the committing thread and
+        //before any later transaction's commit returns, so listeners see every change in commit order. It should
+        //be quick: the next commit on the pool waits for it
+        public interface ChangeListener {
+            void changesCommitted(CommittedChanges changes);
+        }
+        //set the listener for every DAO on the pool, null for none; transactions that committed before this
+        //returns are not reported, those committing after it are
+        public static void setChangeListener(ConnectionPool pool, ChangeListener listener) {
+            CommitOrder order = commitOrders.computeIfAbsent(pool, p -> new CommitOrder());
+            synchronized (order) {
+                order.listener = listener;
+            }
+        }
+        //fetch size used by streamQuestions and streamAnswers
+        public int getFetchSize() {
+            return fetchSize;
+        }
+        public void setFetchSize(int fetchSize) {
+            if (fetchSize < 1) {
+                throw new IllegalArgumentException("Fetch size must be at least 1");
+            }
+            this.fetchSize = fetchSize;
+        }
+        //batch size used by createQuestions and createAnswers
+        public int getBatchSize() {
+            return batchSize;
+        }
+        public void setBatchSize(int batchSize) {
+            if (batchSize < 1) {
+                throw new IllegalArgumentException("Batch size must be at least 1");
+            }
+            this.batchSize = batchSize;
+        }
+
         //helper methods for all operations
+
+        //binds one row's values to an insert statement
+        private interface RowBinder<T> {
+            void bind(PreparedStatement pstmt, T row) throws SQLException;
+        }
+        //stores a generated id back on the inserted object
+        private interface IdSetter<T> {
+            void setId(T row, int id);
+        }
+        //work done on one connection inside a transaction
+        interface TransactionWork<T> {
+            T run(Connection connection) throws SQLException;
+        }
+        //maps the current row of a result set to an object
+        private interface RowMapper<T> {
+            T map(ResultSet rs) throws SQLException;
+        }
+        //extra statements run in the same transaction after a bulk insert, given the generated ids
+        private interface AfterInsert {
+            void run(Connection connection, List<Integer> ids) throws SQLException;
+        }
+        //one per pool: commits and listener calls happen while holding it
+        private static final class CommitOrder {
+            ChangeListener listener;
+        }
+        //run work in a single transaction on a borrowed connection, rolling back on failure; once it has
+        //committed, the pool's change listener is told what it wrote
+        <T> T inTransaction(TransactionWork<T> work) throws SQLException {
+            try (Connection connection = pool.getConnection()) {
+                connection.setAutoCommit(false);
+                CommittedChanges changes = new CommittedChanges();
+                uncommitted.put(connection, changes);
+                try {
+                    T result = work.run(connection);
+                    commit(connection, changes);
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    uncommitted.remove(connection);
+                    connection.setAutoCommit(true);
+                }
+            }
+        }
+        //commit and tell the listener before another transaction on the pool can commit. The write is durable
+        //by the time the listener runs, so a listener failure is only reported
+        private void commit(Connection connection, CommittedChanges changes) throws SQLException {
+            synchronized (commitOrder) {
+                connection.commit();
+                ChangeListener listener = commitOrder.listener;
+                if (listener != null && !changes.isEmpty()) {
+                    try {
+                        listener.changesCommitted(changes);
+                    } catch (RuntimeException e) {
+                        System.err.println("Change listener failed: " + e.getMessage());
+                    }
+                }
+            }
+        }
+        //run reads on a borrowed connection while no transaction on the pool can commit, so they see every
+        //change the listener has been told about and none it has yet to be told about. The connection is
+        //borrowed first, so writers waiting to commit never hold the last one this needs
+        <T> T whileCommitsHeld(TransactionWork<T> work) throws SQLException {
+            try (Connection connection = pool.getConnection()) {
+                synchronized (commitOrder) {
+                    return work.run(connection);
+                }
+            }
+        }
+        //the changes the caller's transaction has written so far; outside inTransaction nothing is reported,
+        //so what is recorded then is dropped
+        CommittedChanges written(Connection connection) {
+            CommittedChanges changes = uncommitted.get(connection);
+            return changes != null ? changes : new CommittedChanges();
+        }
+        //record questions deleted or archived in the caller's transaction
+        private void removed(Connection connection, List<Integer> questionIds) {
+            CommittedChanges written = written(connection);
+            for (int questionId : questionIds) {
+                written.questionRemoved(questionId);
+            }
+        }
+        //the value a TIMESTAMP column keeps: H2 rounds to microseconds, so round down first and the row
+        //stored and the one reported to the change listener agree
+        static LocalDateTime stored(LocalDateTime time) {
+            return time == null ? null : time.truncatedTo(ChronoUnit.MICROS);
+        }
+        //run the insert for every row in JDBC batches inside a single transaction
+        private <T> List<Integer> insertInBatches(String sql, List<T> rows, RowBinder<T> binder, IdSetter<T> idSetter,
+                                                  AfterInsert afterInsert) throws SQLException {
+            if (rows.isEmpty()) {
+                return new ArrayList<>();
+            }
+            List<Integer> ids = inTransaction(connection -> {
+                List<Integer> generated = new ArrayList<>(rows.size());
+                try (PreparedStatement pstmt = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                    for (int start = 0; start < rows.size(); start += batchSize) {
+                        List<T> chunk = rows.subList(start, Math.min(start + batchSize, rows.size()));
+                        for (T row : chunk) {
+                            binder.bind(pstmt, row);
+                            pstmt.addBatch();
+                        }
+                        pstmt.executeBatch();
+                        try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                            for (int i = 0; i < chunk.size(); i++) {
+                                if (!keys.next()) {
+                                    throw new SQLException("Batch insert returned fewer generated keys than rows");
+                                }
+                                generated.add(keys.getInt(1));
+                            }
+                        }
+                    }
+                }
+                if (afterInsert != null) {
+                    afterInsert.run(connection, generated);
+                }
+                return generated;
+            });
+            //only hand out ids once the transaction has committed
+            for (int i = 0; i < rows.size(); i++) {
+                idSetter.setId(rows.get(i), ids.get(i));
+            }
+            return ids;
+        }
+        //build the newest-first listing query for the given columns, adding its parameters to params; with
+        //the archive included each table returns its own top rows off its index and only those are merged
+        private String questionListSql(String columns, QuestionQuery query, QuestionPage.Cursor after, List<Object> params) {
+            if (!query.getIncludeArchived()) {
+                String sql = questionListSql(columns, "questions", FULL_TEXT_MATCHES, query, after, params);
+                //fetch one extra row to find out whether another page follows
+                params.add(query.getLimit() + 1);
+                return sql + " LIMIT ?";
+            }
+            //the archive tables have an extra column, so name the shared ones. H2 keeps the first execution's
+            //LIMIT parameters in bare UNION branches, so each branch is wrapped in a derived table of its own
+            String listColumns = "*".equals(columns) ? QUESTION_COLUMNS : columns;
+            String hot = questionListSql(listColumns, "questions", FULL_TEXT_MATCHES, query, after, params);
+            params.add(query.getLimit() + 1);
+            String cold = questionListSql(listColumns, "archived_questions", ARCHIVED_FULL_TEXT_MATCHES, query, after, params);
+            params.add(query.getLimit() + 1);
+            params.add(query.getLimit() + 1);
+            return "SELECT * FROM (SELECT * FROM (" + hot + " LIMIT ?) UNION ALL SELECT * FROM (" + cold + " LIMIT ?)) q "
+                    + "ORDER BY createdAt DESC, questionId DESC LIMIT ?";
+        }
+        //the listing query against one question table, without its LIMIT
+        private String questionListSql(String columns, String table, String fullTextMatches, QuestionQuery query,
+                                       QuestionPage.Cursor after, List<Object> params) {
+            StringBuilder sql = new StringBuilder("SELECT " + columns + " FROM " + table + " WHERE 1 = 1");
+            if (query.getAnswered() != null) {
+                sql.append(" AND isAnswered = ?");
+                params.add(query.getAnswered());
+            }
+            if (query.getAuthorUserName() != null) {
+                sql.append(" AND authorUserName = ?");
+                params.add(query.getAuthorUserName());
+            }
+            if (query.getCategory() != null) {
+                sql.append(" AND category = ?");
+                params.add(query.getCategory());
+            }
+            if (query.getKeyword() != null) {
+                //questions whose own text or any answer matches, looked up in the full-text index
+                sql.append(" AND questionId IN (SELECT questionId FROM (" + fullTextMatches + ") m)");
+                params.add(query.getKeyword());
+            }
+            if (after != null) {
+                //createdAt <= ? gives the index a range to seek to; the OR breaks ties on questionId
+                Timestamp createdAt = Timestamp.valueOf(after.getCreatedAt());
+                sql.append(" AND createdAt <= ? AND (createdAt < ? OR questionId < ?)");
+                params.add(createdAt);
+                params.add(createdAt);
+                params.add(after.getQuestionId());
+            }
+            sql.append(" ORDER BY createdAt DESC, questionId DESC");
+            return sql.toString();
+        }
+        //each combination of listing criteria is its own statement shape
+        private static String listShape(QuestionQuery query, QuestionPage.Cursor after) {
+            return "["
+                    + (query.getAnswered() != null ? "A" : "")
+                    + (query.getAuthorUserName() != null ? "U" : "")
+                    + (query.getCategory() != null ? "C" : "")
+                    + (query.getKeyword() != null ? "K" : "")
+                    + (query.getIncludeArchived() ? "R" : "")
+                    + (after != null ? "P" : "") + "]";
+        }
+        //full-text hits in one question table and its answers table, mapped to their question;
+        //a hit on the question itself outweighs a hit on an answer
+        private static String fullTextMatches(String questionTable, String answerTable) {
+            return "SELECT COALESCE(a.questionId, CAST(ft.KEYS[1] AS INT)) AS questionId, "
+                    + "CASE WHEN ft.\"TABLE\" = '" + questionTable + "' THEN 2 ELSE 1 END * ft.SCORE AS weight "
+                    + "FROM FT_SEARCH_DATA(?, 0, 0) ft "
+                    + "LEFT JOIN " + answerTable + " a ON ft.\"TABLE\" = '" + answerTable + "' "
+                    + "AND a.answerId = CAST(ft.KEYS[1] AS INT) "
+                    + "WHERE ft.\"TABLE\" IN ('" + questionTable + "', '" + answerTable + "')";
+        }
+        //prefix each column in a comma separated list with a table alias
+        private static String qualified(String alias, String columns) {
+            return alias + "." + columns.replace(", ", ", " + alias + ".");
+        }
+        //run a query and return its rows as a lazy stream; closing the stream closes the result set
+        //and returns the connection, and a read failure surfaces as an unchecked exception from the stream
+        private <T> Stream<T> streamRows(String sql, RowMapper<T> mapper) throws SQLException {
+            Connection connection = pool.getConnection();
+            try {
+                PreparedStatement pstmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                pstmt.setFetchSize(fetchSize);
+                ResultSet rs = pstmt.executeQuery();
+                Spliterator<T> rows = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE,
+                        Spliterator.ORDERED | Spliterator.NONNULL) {
+                    @Override
+                    public boolean tryAdvance(Consumer<? super T> action) {
+                        try {
+                            if (!rs.next()) {
+                                return false;
+                            }
+                            action.accept(mapper.map(rs));
+                            return true;
+                        } catch (SQLException e) {
+                            throw new RuntimeException("Failed to read the next row: " + e.getMessage(), e);
+                        }
+                    }
+                };
+                return StreamSupport.stream(rows, false).onClose(() -> {
+                    try {
+                        try {
+                            pstmt.close(); //closes the result set too
+                        } finally {
+                            connection.close();
+                        }
+                    } catch (SQLException e) {
+                        System.err.println("Failed to close streamed result: " + e.getMessage());
+                    }
+                });
+            } catch (SQLException | RuntimeException e) {
+                connection.close();
+                throw e;
+            }
+        }
+        //extract a question summary from the result set
+        private QuestionSummary extractQuestionSummaryFromResultSet(ResultSet rs) throws SQLException {
+            int acceptedAnswerId = rs.getInt("acceptedAnswerId");
+            Integer accepted = rs.wasNull() ? null : acceptedAnswerId;
+            return new QuestionSummary(
+                rs.getInt("questionId"),
+                rs.getString("title"),
+                rs.getString("authorUserName"),
+                rs.getTimestamp("createdAt").toLocalDateTime(),
+                rs.getBoolean("isAnswered"),
+                rs.getString("category"),
+                rs.getInt("answerCount"),
+                accepted
+            );
+        }
+        //extract a question from the result set
         private Question extractQuestionFromResultSet(ResultSet rs) throws SQLException {
             Question q = new Question(
                 rs.getString("title"),
@@ -220,11 +1125,27 @@ public class DiscussionBoardDAO {
             );
             q.setQuestionId(rs.getInt("questionId"));
             q.setCreatedAt(rs.getTimestamp("createdAt").toLocalDateTime());
-            q.setUpdatedAt(rs.getTimestamp("updatedAt").toLocalDateTime());
+            //after setIsAnswered, which stamps updatedAt with the current time
             q.setIsAnswered(rs.getBoolean("isAnswered"));
+            q.setUpdatedAt(rs.getTimestamp("updatedAt").toLocalDateTime());
             q.setCategory(rs.getString("category"));
+            q.setAnswerCount(rs.getInt("answerCount"));
+            int acceptedAnswerId = rs.getInt("acceptedAnswerId");
+            q.setAcceptedAnswerId(rs.wasNull() ? null : acceptedAnswerId);
+            q.setVersion(rs.getInt("version"));
             return q;
         }
+        //extract a change log entry from the result set
+        private ChangeLogEntry extractChangeFromResultSet(ResultSet rs) throws SQLException {
+            return new ChangeLogEntry(
+                rs.getLong("seq"),
+                Entity.valueOf(rs.getString("entity")),
+                rs.getInt("entityId"),
+                rs.getInt("questionId"),
+                Operation.valueOf(rs.getString("operation")),
+                rs.getTimestamp("changedAt").toLocalDateTime()
+            );
+        }
         //extract an answer from the result set
         private Answer extractAnswerFromResultSet(ResultSet rs) throws SQLException {
             Answer a = new Answer(
@@ -236,16 +1157,17 @@ public class DiscussionBoardDAO {
                 rs.getTimestamp("updatedAt").toLocalDateTime(),
                 rs.getBoolean("isAccepted")
             );
+            a.setVersion(rs.getInt("version"));
             return a;
         }
 
-        //finally, close the connection
+        //finally, close the connection; the DAO borrows a pooled connection per operation and holds none
+        //between calls, so there is nothing left to close. DatabaseHelper.closeConnection shuts the pool down
         public void closeConnection() {
-            try {
-                if (statement != null) statement.close();
-                if (connection != null) connection.close();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
+        }
+
+        //pool metrics, for diagnostics
+        public ConnectionPool getConnectionPool() {
+            return pool;
         }
     }
@@ -0,0 +1,69 @@
+package databasePart1;
+
+import java.security.SecureRandom;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The InvitationCodeGenerator class makes random invitation codes from a SecureRandom. Codes are
+ * drawn uniformly from a configurable alphabet at a configurable length; the default alphabet
+ * leaves out characters that are easy to misread (0/O, 1/I/L), and the default length of 8 gives
+ * about 10^12 possible codes, so guessing an outstanding code is impractical.
+ */
+public class InvitationCodeGenerator {
+    public static final String DEFAULT_ALPHABET = "ABCDEFGHJKMNPQRSTUVWXYZ23456789";
+    public static final int DEFAULT_LENGTH = 8;
+    //the width of the InvitationCodes.code column
+    public static final int MAX_LENGTH = 32;
+
+    private final SecureRandom random = new SecureRandom();
+    private final String alphabet;
+    private final int length;
+
+    public InvitationCodeGenerator() {
+        this(DEFAULT_ALPHABET, DEFAULT_LENGTH);
+    }
+
+    public InvitationCodeGenerator(String alphabet, int length) {
+        if (alphabet == null || alphabet.length() < 2 || alphabet.chars().distinct().count() != alphabet.length()) {
+            throw new IllegalArgumentException("Alphabet must have at least 2 distinct characters and no repeats");
+        }
+        if (length < 4 || length > MAX_LENGTH) {
+            throw new IllegalArgumentException("Code length must be between 4 and " + MAX_LENGTH);
+        }
+        this.alphabet = alphabet;
+        this.length = length;
+    }
+
+    // Returns one new random code.
+    public String next() {
+        char[] code = new char[length];
+        for (int i = 0; i < code.length; i++) {
+            code[i] = alphabet.charAt(random.nextInt(alphabet.length()));
+        }
+        return new String(code);
+    }
+
+    // Returns count distinct new codes, in the order they were drawn.
+    public Set<String> next(int count) {
+        if (count > getPossibleCodes()) {
+            throw new IllegalArgumentException("Only " + (long) getPossibleCodes() + " different codes are possible");
+        }
+        Set<String> codes = new LinkedHashSet<>();
+        while (codes.size() < count) {
+            codes.add(next());
+        }
+        return codes;
+    }
+
+    public String getAlphabet() {
+        return alphabet;
+    }
+    public int getLength() {
+        return length;
+    }
+    // number of different codes, as a double because long alphabets and lengths overflow a long
+    public double getPossibleCodes() {
+        return Math.pow(alphabet.length(), length);
+    }
+}
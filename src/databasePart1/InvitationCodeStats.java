@@ -0,0 +1,44 @@
+package databasePart1;
+
+import java.time.LocalDateTime;
+
+/**
+ * The InvitationCodeStats class is a snapshot of the InvitationCodes table: how many codes can
+ * still be redeemed, and how many used or expired codes are waiting for the sweeper.
+ */
+public class InvitationCodeStats {
+    private final int outstanding;
+    private final int used;
+    private final int expired;
+    private final LocalDateTime nextExpiry;
+
+    public InvitationCodeStats(int outstanding, int used, int expired, LocalDateTime nextExpiry) {
+        this.outstanding = outstanding;
+        this.used = used;
+        this.expired = expired;
+        this.nextExpiry = nextExpiry;
+    }
+
+    // codes that are unused and not yet expired
+    public int getOutstanding() {
+        return outstanding;
+    }
+    // redeemed codes not yet swept
+    public int getUsed() {
+        return used;
+    }
+    // unused codes past their expiry, not yet swept
+    public int getExpired() {
+        return expired;
+    }
+    // when the next outstanding code expires, or null if none are outstanding
+    public LocalDateTime getNextExpiry() {
+        return nextExpiry;
+    }
+
+    @Override
+    public String toString() {
+        return "InvitationCodeStats{outstanding=" + outstanding + ", used=" + used + ", expired=" + expired
+                + ", nextExpiry=" + nextExpiry + '}';
+    }
+}
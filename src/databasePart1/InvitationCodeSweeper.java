@@ -0,0 +1,100 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The InvitationCodeSweeper class keeps the InvitationCodes table from growing without bound. On a
+ * fixed schedule it deletes codes that have been redeemed or have expired, in batches of at most
+ * batchSize rows, each batch its own short transaction, so a large backlog never holds locks for
+ * long or stalls registrations redeeming codes at the same time.
+ */
+public final class InvitationCodeSweeper implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_MINUTES = 10;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    private final ConnectionPool pool;
+    private final int batchSize;
+    private final PeriodicTask task;
+
+    //metrics
+    private final AtomicLong sweepCount = new AtomicLong();
+    private final AtomicLong deletedCount = new AtomicLong();
+    private final AtomicLong lastSweepDeleted = new AtomicLong();
+    private final AtomicLong lastSweepNanos = new AtomicLong();
+    private final AtomicLong maxSweepNanos = new AtomicLong();
+
+    public InvitationCodeSweeper(ConnectionPool pool) {
+        this(pool, DEFAULT_INTERVAL_MINUTES, TimeUnit.MINUTES, DEFAULT_BATCH_SIZE);
+    }
+
+    public InvitationCodeSweeper(ConnectionPool pool, long interval, TimeUnit unit, int batchSize) {
+        if (interval < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Interval and batch size must be at least 1");
+        }
+        this.pool = pool;
+        this.batchSize = batchSize;
+        //first sweep right away clears whatever piled up while the application was closed
+        this.task = new PeriodicTask("invitation-code-sweeper", "Invitation code sweep", this::sweep, 0, interval, unit);
+    }
+
+    /**
+     * Deletes every used or expired code now, batch by batch, and returns how many were deleted.
+     */
+    public int sweep() throws SQLException {
+        String sql = "DELETE FROM InvitationCodes WHERE code IN (SELECT code FROM InvitationCodes "
+                + "WHERE isUsed = TRUE OR expiresAt <= ? LIMIT ?)";
+        long start = System.nanoTime();
+        LocalDateTime now = LocalDateTime.now();
+        int total = 0;
+        int deleted;
+        do {
+            try (Connection connection = pool.getConnection()) {
+                PreparedStatement delete = pool.prepare(connection, "sweepInvitationCodes", sql);
+                delete.setObject(1, now);
+                delete.setInt(2, batchSize);
+                deleted = delete.executeUpdate();
+            }
+            total += deleted;
+            deletedCount.addAndGet(deleted);
+        } while (deleted == batchSize);
+        long elapsed = System.nanoTime() - start;
+        sweepCount.incrementAndGet();
+        lastSweepDeleted.set(total);
+        lastSweepNanos.set(elapsed);
+        maxSweepNanos.accumulateAndGet(elapsed, Math::max);
+        return total;
+    }
+
+    @Override
+    public void close() {
+        task.close();
+    }
+
+    //metrics
+    public long getSweepCount() {
+        return sweepCount.get();
+    }
+    public long getDeletedCount() {
+        return deletedCount.get();
+    }
+    public long getLastSweepDeleted() {
+        return lastSweepDeleted.get();
+    }
+    public double getLastSweepMillis() {
+        return lastSweepNanos.get() / 1_000_000.0;
+    }
+    public double getMaxSweepMillis() {
+        return maxSweepNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("InvitationCodeSweeper{sweeps=%d, deleted=%d, lastDeleted=%d, lastSweep=%.3fms, maxSweep=%.3fms}",
+                getSweepCount(), getDeletedCount(), getLastSweepDeleted(), getLastSweepMillis(), getMaxSweepMillis());
+    }
+}
@@ -0,0 +1,163 @@
+package databasePart1;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * The PasswordHasher class turns passwords into salted PBKDF2-HMAC-SHA256 hashes for storage and
+ * checks login attempts against them. Stored values look like
+ * pbkdf2-sha256$iterations$salt$hash, so hashes made with an older iteration count keep verifying
+ * after the count changes.
+ *
+ * The iteration count is calibrated when the hasher is created: the highest count (never below
+ * MIN_ITERATIONS) that hashes within the target latency on this machine. Hashing is deliberately
+ * CPU heavy, so it runs on a small executor sized to the processor count; concurrent logins run in
+ * parallel there instead of queueing behind one thread or starving other work. Calibration is the
+ * first task on that executor, so creating a hasher returns at once and the first hash waits for it.
+ */
+public class PasswordHasher {
+
+    public static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    public static final String PREFIX = "pbkdf2-sha256";
+    public static final long DEFAULT_TARGET_MILLIS = 100;
+    public static final int MIN_ITERATIONS = 100_000;
+    public static final int MAX_ITERATIONS = 5_000_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    //iterations timed per calibration sample
+    private static final int CALIBRATION_ITERATIONS = 20_000;
+
+    private static PasswordHasher shared;
+
+    private final SecureRandom random = new SecureRandom();
+    private final ExecutorService executor;
+    //calibrated iteration count, completed by the first task on the executor
+    private final CompletableFuture<Integer> iterations;
+
+    public PasswordHasher(long targetMillis) {
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "password-hasher-" + threads.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.iterations = CompletableFuture.supplyAsync(() -> calibrate(targetMillis), executor);
+    }
+
+    // Returns the hasher used by the application, starting its calibration in the background on first use.
+    public static synchronized PasswordHasher getShared() {
+        if (shared == null) {
+            shared = new PasswordHasher(DEFAULT_TARGET_MILLIS);
+            shared.iterations.thenAccept(count ->
+                    System.out.println("Password hashing calibrated to " + count + " PBKDF2 iterations"));
+        }
+        return shared;
+    }
+
+    // Hashes a password with a fresh salt at the calibrated iteration count, off the caller's thread.
+    public CompletableFuture<String> hashAsync(String password) {
+        return CompletableFuture.supplyAsync(() -> hash(password), executor);
+    }
+
+    // Checks a password against a stored hash, off the caller's thread.
+    public CompletableFuture<Boolean> verifyAsync(String password, String stored) {
+        return CompletableFuture.supplyAsync(() -> verify(password, stored), executor);
+    }
+
+    // Blocking forms of the above, for callers already off the UI thread.
+    public String hashPassword(String password) {
+        return hashAsync(password).join();
+    }
+    public boolean verifyPassword(String password, String stored) {
+        try {
+            return verifyAsync(password, stored).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+
+    // True if the stored value is one of this class's hashes rather than a legacy plain password.
+    public static boolean isHash(String stored) {
+        return stored != null && stored.startsWith(PREFIX + "$");
+    }
+
+    // True if the stored hash should be replaced, because it is legacy or weaker than the current count.
+    public boolean needsRehash(String stored) {
+        if (!isHash(stored)) {
+            return true;
+        }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < getIterations();
+    }
+
+    // The calibrated count, waiting for calibration to finish if it is still running.
+    public int getIterations() {
+        return iterations.join();
+    }
+
+    private String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        int count = getIterations();
+        byte[] hash = pbkdf2(password, salt, count);
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + "$" + count + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(hash);
+    }
+
+    private boolean verify(String password, String stored) {
+        if (password == null || stored == null) {
+            return false;
+        }
+        if (!isHash(stored)) {
+            //accounts registered before hashing; compared in constant time and rehashed by the caller
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        Base64.Decoder b64 = Base64.getDecoder();
+        byte[] expected = b64.decode(parts[3]);
+        byte[] actual = pbkdf2(password, b64.decode(parts[2]), Integer.parseInt(parts[1]));
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    //time a fixed number of iterations (best of a few runs, after warm-up) and scale to the target
+    private static int calibrate(long targetMillis) {
+        byte[] salt = new byte[SALT_BYTES];
+        pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 3; i++) {
+            long start = System.nanoTime();
+            pbkdf2("calibration", salt, CALIBRATION_ITERATIONS);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double nanosPerIteration = (double) best / CALIBRATION_ITERATIONS;
+        long affordable = (long) (targetMillis * 1_000_000L / nanosPerIteration);
+        //round down to a whole thousand so the stored counts stay readable
+        affordable = affordable / 1000 * 1000;
+        return (int) Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, affordable));
+    }
+}
@@ -0,0 +1,62 @@
+package databasePart1;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The PeriodicTask class runs one maintenance job on its own daemon thread with a fixed delay
+ * between runs, for the background services of this package. A failed run is reported and counted
+ * instead of thrown, since a scheduled run that throws is never run again.
+ */
+final class PeriodicTask implements AutoCloseable {
+
+    //the work done by each run
+    interface Job {
+        void run() throws Exception;
+    }
+
+    private final String description;
+    private final Job job;
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong failureCount = new AtomicLong();
+
+    // Starts running the job after initialDelay, then interval after each run ends; failures are
+    // reported as "<description> failed".
+    PeriodicTask(String threadName, String description, Job job, long initialDelay, long interval, TimeUnit unit) {
+        this.description = description;
+        this.job = job;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+        this.scheduler.scheduleWithFixedDelay(this::runQuietly, initialDelay, interval, unit);
+    }
+
+    private void runQuietly() {
+        try {
+            job.run();
+        } catch (Exception e) {
+            failureCount.incrementAndGet();
+            System.err.println(description + " failed: " + e.getMessage());
+        }
+    }
+
+    // Scheduled runs that threw.
+    long getFailureCount() {
+        return failureCount.get();
+    }
+
+    // Stops future runs and waits briefly for one in progress to finish.
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package databasePart1;
+
+import java.time.LocalDateTime;
+
+/**
+ * The PurgeCriteria class describes which questions DiscussionBoardDAO.purgeQuestions deletes:
+ * any combination of author, category and a creation cutoff, plus how many questions go in each
+ * transaction. At least one criterion is required so a purge can never empty the whole board.
+ */
+public class PurgeCriteria {
+    public static final int DEFAULT_CHUNK_SIZE = 200;
+
+    private String authorUserName;
+    private String category;
+    private LocalDateTime createdBefore;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    // only questions by this author; null for any author
+    public PurgeCriteria author(String authorUserName) {
+        this.authorUserName = authorUserName;
+        return this;
+    }
+    // only questions in this category; null for any category
+    public PurgeCriteria category(String category) {
+        this.category = category;
+        return this;
+    }
+    // only questions created before this time; null for any age
+    public PurgeCriteria createdBefore(LocalDateTime createdBefore) {
+        this.createdBefore = createdBefore;
+        return this;
+    }
+    // questions deleted per transaction; smaller chunks hold locks for less time
+    public PurgeCriteria chunkSize(int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be at least 1");
+        }
+        this.chunkSize = chunkSize;
+        return this;
+    }
+
+    //getters
+    public String getAuthorUserName() {
+        return authorUserName;
+    }
+    public String getCategory() {
+        return category;
+    }
+    public LocalDateTime getCreatedBefore() {
+        return createdBefore;
+    }
+    public int getChunkSize() {
+        return chunkSize;
+    }
+    // true when no criterion is set
+    public boolean isEmpty() {
+        return authorUserName == null && category == null && createdBefore == null;
+    }
+
+    @Override
+    public String toString() {
+        return "PurgeCriteria{" +
+                "authorUserName='" + authorUserName + '\'' +
+                ", category='" + category + '\'' +
+                ", createdBefore=" + createdBefore +
+                ", chunkSize=" + chunkSize +
+                '}';
+    }
+}
@@ -0,0 +1,74 @@
+package databasePart1;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The QuestionArchiver class keeps the board's hot tables down to its working set. On a fixed
+ * schedule it moves questions older than the maximum age, together with their answers, into the
+ * archive tables through DiscussionBoardDAO.archiveQuestions, one short transaction per batch.
+ * Archived questions are only read when a query asks for the archive or a question is opened by id.
+ * There is no default age: the application only archives when db.archive.maxAgeDays is configured.
+ */
+public final class QuestionArchiver implements AutoCloseable {
+    public static final long DEFAULT_INTERVAL_HOURS = 24;
+    public static final int DEFAULT_BATCH_SIZE = 200;
+
+    private final DiscussionBoardDAO dao;
+    private final Duration maxAge;
+    private final int batchSize;
+    private final PeriodicTask task;
+
+    //metrics
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong archivedCount = new AtomicLong();
+    private final AtomicLong lastRunNanos = new AtomicLong();
+
+    public QuestionArchiver(DiscussionBoardDAO dao, Duration maxAge, long interval, TimeUnit unit, int batchSize) {
+        if (maxAge.isNegative() || interval < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Age must not be negative, interval and batch size at least 1");
+        }
+        this.dao = dao;
+        this.maxAge = maxAge;
+        this.batchSize = batchSize;
+        this.task = new PeriodicTask("question-archiver", "Question archival", this::archive, 0, interval, unit);
+    }
+
+    /**
+     * Archives every question older than the maximum age now and returns how many were moved.
+     */
+    public int archive() throws SQLException {
+        long start = System.nanoTime();
+        int archived = dao.archiveQuestions(LocalDateTime.now().minus(maxAge), batchSize);
+        runCount.incrementAndGet();
+        archivedCount.addAndGet(archived);
+        lastRunNanos.set(System.nanoTime() - start);
+        return archived;
+    }
+
+
+    @Override
+    public void close() {
+        task.close();
+    }
+
+    //metrics
+    public long getRunCount() {
+        return runCount.get();
+    }
+    public long getArchivedCount() {
+        return archivedCount.get();
+    }
+    public double getLastRunMillis() {
+        return lastRunNanos.get() / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("QuestionArchiver{maxAge=%s, runs=%d, archived=%d, lastRun=%.3fms}",
+                maxAge, getRunCount(), getArchivedCount(), getLastRunMillis());
+    }
+}
@@ -0,0 +1,85 @@
+package databasePart1;
+
+/**
+ * The QuestionQuery class describes which questions to list: optional answered status, author,
+ * category and keyword criteria plus a row limit. DiscussionBoardDAO.findQuestions turns it into
+ * a parameterized WHERE clause so only matching rows are read from the database. Archived
+ * questions are only searched when includeArchived is set.
+ */
+public class QuestionQuery {
+    public static final int DEFAULT_LIMIT = 50;
+    public static final int MAX_LIMIT = 1000;
+
+    private Boolean answered;
+    private String authorUserName;
+    private String category;
+    private String keyword;
+    private boolean includeArchived;
+    private int limit = DEFAULT_LIMIT;
+
+    // only answered (true) or unanswered (false) questions; null for either
+    public QuestionQuery answered(Boolean answered) {
+        this.answered = answered;
+        return this;
+    }
+    // only questions by this author; null for any author
+    public QuestionQuery author(String authorUserName) {
+        this.authorUserName = authorUserName;
+        return this;
+    }
+    // only questions in this category; null for any category
+    public QuestionQuery category(String category) {
+        this.category = category;
+        return this;
+    }
+    // only questions whose title, content or answers contain the keyword's words; null or blank for no keyword
+    public QuestionQuery keyword(String keyword) {
+        this.keyword = keyword == null || keyword.trim().isEmpty() ? null : keyword.trim();
+        return this;
+    }
+    // also list questions moved to the archive; off by default so listings only touch the hot table
+    public QuestionQuery includeArchived(boolean includeArchived) {
+        this.includeArchived = includeArchived;
+        return this;
+    }
+    // maximum number of questions to return
+    public QuestionQuery limit(int limit) {
+        if (limit < 1 || limit > MAX_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_LIMIT);
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    //getters
+    public Boolean getAnswered() {
+        return answered;
+    }
+    public String getAuthorUserName() {
+        return authorUserName;
+    }
+    public String getCategory() {
+        return category;
+    }
+    public String getKeyword() {
+        return keyword;
+    }
+    public boolean getIncludeArchived() {
+        return includeArchived;
+    }
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public String toString() {
+        return "QuestionQuery{" +
+                "answered=" + answered +
+                ", authorUserName='" + authorUserName + '\'' +
+                ", category='" + category + '\'' +
+                ", keyword='" + keyword + '\'' +
+                ", includeArchived=" + includeArchived +
+                ", limit=" + limit +
+                '}';
+    }
+}
@@ -0,0 +1,305 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The SchemaMigrator class brings the database schema up to date by applying numbered
+ * migrations in order and recording each applied version in the schema_version table.
+ * Existing database files are upgraded in place the next time the application connects.
+ *
+ * H2 commits implicitly around DDL, so every migration is written to be safe to re-run
+ * (IF NOT EXISTS) in case the application stops between a migration and its version row.
+ */
+public class SchemaMigrator {
+
+    //a migration step that needs more than plain SQL
+    interface Step {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    //one schema change, identified by a version number that never changes once released
+    static class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, String... statements) {
+            this(version, description, connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    for (String sql : statements) {
+                        statement.execute(sql);
+                    }
+                }
+            });
+        }
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    //all migrations, in the order they are applied. Only ever append to this list.
+    private static final List<Migration> MIGRATIONS = List.of(
+        new Migration(1, "Create user, invitation code and discussion board tables",
+            "CREATE TABLE IF NOT EXISTS cse360users ("
+                + "id INT AUTO_INCREMENT PRIMARY KEY, "
+                + "userName VARCHAR(255) UNIQUE, "
+                + "password VARCHAR(255), "
+                + "role VARCHAR(20))",
+            "CREATE TABLE IF NOT EXISTS InvitationCodes ("
+                + "code VARCHAR(10) PRIMARY KEY, "
+                + "isUsed BOOLEAN DEFAULT FALSE)",
+            "CREATE TABLE IF NOT EXISTS questions("
+                + "questionId INT AUTO_INCREMENT PRIMARY KEY,"
+                + "title VARCHAR(255) NOT NULL,"
+                + "content TEXT NOT NULL,"
+                + "authorUserName VARCHAR(255) NOT NULL,"
+                + "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "isAnswered BOOLEAN DEFAULT FALSE,"
+                + "category VARCHAR(100))",
+            "CREATE TABLE IF NOT EXISTS answers("
+                + "answerId INT AUTO_INCREMENT PRIMARY KEY,"
+                + "questionId INT NOT NULL,"
+                + "content TEXT NOT NULL,"
+                + "authorUserName VARCHAR(255) NOT NULL,"
+                + "createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "updatedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP,"
+                + "isAccepted BOOLEAN DEFAULT FALSE,"
+                + "FOREIGN KEY (questionId) REFERENCES questions(questionId))"),
+        new Migration(2, "Add secondary indexes for discussion board lookups",
+            //getAnswersForQuestion: WHERE questionId = ? ORDER BY isAccepted DESC, createdAt ASC
+            "CREATE INDEX IF NOT EXISTS idx_answers_question ON answers(questionId, isAccepted DESC, createdAt)",
+            //question list: ORDER BY createdAt DESC, with questionId as the tie breaker
+            "CREATE INDEX IF NOT EXISTS idx_questions_created ON questions(createdAt DESC, questionId DESC)",
+            "CREATE INDEX IF NOT EXISTS idx_questions_author ON questions(authorUserName, createdAt DESC)",
+            "CREATE INDEX IF NOT EXISTS idx_questions_answered ON questions(isAnswered, createdAt DESC)",
+            "CREATE INDEX IF NOT EXISTS idx_questions_category ON questions(category, createdAt DESC)"),
+        new Migration(3, "Create H2 full-text index on question and answer text",
+            SchemaMigrator::createFullTextIndexes),
+        new Migration(4, "Add denormalized answer count and accepted answer to questions",
+            "ALTER TABLE questions ADD COLUMN IF NOT EXISTS answerCount INT DEFAULT 0 NOT NULL",
+            "ALTER TABLE questions ADD COLUMN IF NOT EXISTS acceptedAnswerId INT",
+            "UPDATE questions q SET "
+                + "answerCount = (SELECT COUNT(*) FROM answers a WHERE a.questionId = q.questionId), "
+                + "acceptedAnswerId = (SELECT MAX(a.answerId) FROM answers a WHERE a.questionId = q.questionId AND a.isAccepted)"),
+        new Migration(5, "Delete answers together with their question",
+            SchemaMigrator::cascadeAnswerDeletes),
+        new Migration(6, "Widen invitation codes for random batch minting",
+            "ALTER TABLE InvitationCodes ALTER COLUMN code SET DATA TYPE VARCHAR(32)"),
+        new Migration(7, "Add creation and expiry times to invitation codes",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS createdAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP",
+            "ALTER TABLE InvitationCodes ADD COLUMN IF NOT EXISTS expiresAt TIMESTAMP",
+            //codes minted before expiry existed get the default validity from now
+            "UPDATE InvitationCodes SET expiresAt = DATEADD(DAY, 7, CURRENT_TIMESTAMP) WHERE expiresAt IS NULL",
+            //sweeper and outstanding-code counts: WHERE expiresAt <= ?
+            "CREATE INDEX IF NOT EXISTS idx_invitation_codes_expires ON InvitationCodes(expiresAt)"),
+        new Migration(8, "Add row versions for optimistic question and answer updates",
+            "ALTER TABLE questions ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL",
+            "ALTER TABLE answers ADD COLUMN IF NOT EXISTS version INT DEFAULT 0 NOT NULL"),
+        new Migration(9, "Create change log for incremental client sync",
+            "CREATE TABLE IF NOT EXISTS change_log ("
+                + "seq BIGINT PRIMARY KEY, "
+                + "entity VARCHAR(10) NOT NULL, "
+                + "entityId INT NOT NULL, "
+                + "questionId INT NOT NULL, "
+                + "operation VARCHAR(10) NOT NULL, "
+                + "changedAt TIMESTAMP NOT NULL)",
+            //pruning: WHERE changedAt < ?
+            "CREATE INDEX IF NOT EXISTS idx_change_log_changed ON change_log(changedAt)",
+            //one row holding the last handed out sequence number
+            "CREATE TABLE IF NOT EXISTS change_log_sequence (id INT PRIMARY KEY, seq BIGINT NOT NULL)",
+            "INSERT INTO change_log_sequence (id, seq) SELECT 1, 0 WHERE NOT EXISTS (SELECT 1 FROM change_log_sequence)"),
+        new Migration(10, "Create archive tables for old questions and answers",
+            SchemaMigrator::createArchiveTables),
+        new Migration(11, "Create row timed by the backup service to measure writer stalls",
+            "CREATE TABLE IF NOT EXISTS backup_probe (id INT PRIMARY KEY, probedAt TIMESTAMP)",
+            "INSERT INTO backup_probe (id, probedAt) SELECT 1, CURRENT_TIMESTAMP WHERE NOT EXISTS (SELECT 1 FROM backup_probe)")
+    );
+
+    //pools that have already been migrated in this run
+    private static final Set<ConnectionPool> migrated = Collections.newSetFromMap(new WeakHashMap<>());
+
+    private SchemaMigrator() {
+    }
+
+    // Applies any pending migrations once per pool; later calls return immediately.
+    public static synchronized void migrate(ConnectionPool pool) throws SQLException {
+        if (migrated.contains(pool)) {
+            return;
+        }
+        try (Connection connection = pool.getConnection()) {
+            migrate(connection);
+        }
+        migrated.add(pool);
+    }
+
+    // Applies every migration newer than the recorded schema version.
+    public static void migrate(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                    + "version INT PRIMARY KEY, "
+                    + "description VARCHAR(255), "
+                    + "appliedAt TIMESTAMP DEFAULT CURRENT_TIMESTAMP)");
+        }
+
+        int current = getCurrentVersion(connection);
+        boolean applied = false;
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version > current) {
+                apply(connection, migration);
+                applied = true;
+            }
+        }
+        if (applied) {
+            refreshFullTextTriggers(connection);
+        }
+    }
+
+    // Returns the highest applied version, or 0 for a fresh database.
+    public static int getCurrentVersion(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(version), 0) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Returns the version the schema will be at once every migration has run.
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement record = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            migration.step.apply(connection);
+            record.setInt(1, migration.version);
+            record.setString(2, migration.description);
+            record.executeUpdate();
+            connection.commit();
+            System.out.println("Applied schema migration " + migration.version + ": " + migration.description);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Schema migration " + migration.version + " failed: " + e.getMessage(), e);
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    //set up H2's native full-text search; its triggers keep the index current on every write
+    private static void createFullTextIndexes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE ALIAS IF NOT EXISTS FT_INIT FOR 'org.h2.fulltext.FullText.init'");
+            statement.execute("CALL FT_INIT()");
+        }
+        createFullTextIndex(connection, "QUESTIONS", "TITLE,CONTENT");
+        createFullTextIndex(connection, "ANSWERS", "CONTENT");
+    }
+
+    //cold copies of questions and answers, same columns plus when they were archived; ids are kept,
+    //so no key generation. Indexed and full-text searchable like the hot tables, for archive searches
+    private static void createArchiveTables(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS archived_questions("
+                    + "questionId INT PRIMARY KEY,"
+                    + "title VARCHAR(255) NOT NULL,"
+                    + "content TEXT NOT NULL,"
+                    + "authorUserName VARCHAR(255) NOT NULL,"
+                    + "createdAt TIMESTAMP,"
+                    + "updatedAt TIMESTAMP,"
+                    + "isAnswered BOOLEAN DEFAULT FALSE,"
+                    + "category VARCHAR(100),"
+                    + "answerCount INT DEFAULT 0 NOT NULL,"
+                    + "acceptedAnswerId INT,"
+                    + "version INT DEFAULT 0 NOT NULL,"
+                    + "archivedAt TIMESTAMP NOT NULL)");
+            statement.execute("CREATE TABLE IF NOT EXISTS archived_answers("
+                    + "answerId INT PRIMARY KEY,"
+                    + "questionId INT NOT NULL,"
+                    + "content TEXT NOT NULL,"
+                    + "authorUserName VARCHAR(255) NOT NULL,"
+                    + "createdAt TIMESTAMP,"
+                    + "updatedAt TIMESTAMP,"
+                    + "isAccepted BOOLEAN DEFAULT FALSE,"
+                    + "version INT DEFAULT 0 NOT NULL,"
+                    + "archivedAt TIMESTAMP NOT NULL,"
+                    + "CONSTRAINT fk_archived_answers_question FOREIGN KEY (questionId) "
+                    + "REFERENCES archived_questions(questionId) ON DELETE CASCADE)");
+            //the same listing and answer orders as the hot tables
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_archived_questions_created "
+                    + "ON archived_questions(createdAt DESC, questionId DESC)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_archived_questions_author "
+                    + "ON archived_questions(authorUserName, createdAt DESC)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_archived_answers_question "
+                    + "ON archived_answers(questionId, isAccepted DESC, createdAt)");
+        }
+        createFullTextIndex(connection, "ARCHIVED_QUESTIONS", "TITLE,CONTENT");
+        createFullTextIndex(connection, "ARCHIVED_ANSWERS", "CONTENT");
+    }
+
+    //replace the unnamed answers -> questions foreign key with a named one that cascades deletes
+    private static void cascadeAnswerDeletes(Connection connection) throws SQLException {
+        List<String> foreignKeys = new ArrayList<>();
+        try (PreparedStatement find = connection.prepareStatement(
+                "SELECT CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS "
+                + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_NAME = 'ANSWERS' AND CONSTRAINT_TYPE = 'FOREIGN KEY'");
+             ResultSet rs = find.executeQuery()) {
+            while (rs.next()) {
+                foreignKeys.add(rs.getString(1));
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            for (String name : foreignKeys) {
+                statement.execute("ALTER TABLE answers DROP CONSTRAINT \"" + name + "\"");
+            }
+            statement.execute("ALTER TABLE answers ADD CONSTRAINT fk_answers_question "
+                    + "FOREIGN KEY (questionId) REFERENCES questions(questionId) ON DELETE CASCADE");
+        }
+    }
+
+    //ALTER TABLE may rebuild a table, and H2 then drops the full-text index's registration along with
+    //the old table's trigger, so searches fail until the database is reopened; re-create the triggers
+    private static void refreshFullTextTriggers(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(
+                     "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SCHEMATA WHERE SCHEMA_NAME = 'FT'")) {
+            if (!rs.next() || rs.getInt(1) == 0) {
+                return;
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CALL FT_REINDEX()");
+        }
+    }
+
+    //FT_CREATE_INDEX fails if the table is already indexed, so check first
+    private static void createFullTextIndex(Connection connection, String table, String columns) throws SQLException {
+        try (PreparedStatement check = connection.prepareStatement(
+                "SELECT COUNT(*) FROM FT.INDEXES WHERE SCHEMA = 'PUBLIC' AND \"TABLE\" = ?")) {
+            check.setString(1, table);
+            try (ResultSet rs = check.executeQuery()) {
+                if (rs.next() && rs.getInt(1) > 0) {
+                    return;
+                }
+            }
+        }
+        try (PreparedStatement create = connection.prepareStatement("CALL FT_CREATE_INDEX('PUBLIC', ?, ?)")) {
+            create.setString(1, table);
+            create.setString(2, columns);
+            create.execute();
+        }
+    }
+}
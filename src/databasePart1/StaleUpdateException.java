@@ -0,0 +1,45 @@
+package databasePart1;
+
+import java.sql.SQLException;
+
+/**
+ * The StaleUpdateException class reports an optimistic update that lost a race: the row was
+ * changed by another client after this one read it, so its version no longer matched and nothing
+ * was written. The caller should reload the row and let the user reapply their edit.
+ */
+public class StaleUpdateException extends SQLException {
+    private static final long serialVersionUID = 1L;
+
+    //SQLSTATE for a transaction that lost a concurrent update
+    public static final String SQL_STATE = "40001";
+
+    private final String entity;
+    private final int id;
+    private final int expectedVersion;
+    private final int currentVersion;
+
+    public StaleUpdateException(String entity, int id, int expectedVersion, int currentVersion) {
+        super("The " + entity + " " + id + " was changed by someone else (version " + currentVersion
+                + ", edit was based on version " + expectedVersion + ")", SQL_STATE);
+        this.entity = entity;
+        this.id = id;
+        this.expectedVersion = expectedVersion;
+        this.currentVersion = currentVersion;
+    }
+
+    // "question" or "answer"
+    public String getEntity() {
+        return entity;
+    }
+    public int getId() {
+        return id;
+    }
+    // version the rejected edit was based on
+    public int getExpectedVersion() {
+        return expectedVersion;
+    }
+    // version the row has now
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+}
@@ -0,0 +1,139 @@
+package databasePart1;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The StatementRegistry class keeps named PreparedStatements open on each pooled connection so
+ * the same SQL is parsed and planned once per connection instead of on every call. Statements
+ * handed out by the registry belong to the registry: callers must not close them, and may only
+ * use them while they hold the connection they were prepared for. Each statement handed out counts
+ * its own executions, so the statistics show how often a name is run as well as how often it had
+ * to be prepared.
+ */
+public class StatementRegistry {
+
+    //open statements per physical connection, by statement name
+    private final Map<Connection, Map<String, PreparedStatement>> statements = new ConcurrentHashMap<>();
+    //SQL registered under each name, so a name can't silently be reused for different SQL
+    private final Map<String, String> sqlByName = new ConcurrentHashMap<>();
+    private final Map<String, Stats> stats = new ConcurrentHashMap<>();
+
+    //usage counters for one named statement
+    public static class Stats {
+        private final AtomicLong hits = new AtomicLong();
+        private final AtomicLong misses = new AtomicLong();
+        private final AtomicLong executions = new AtomicLong();
+
+        public long getHits() {
+            return hits.get();
+        }
+        public long getMisses() {
+            return misses.get();
+        }
+        // execute calls on the statement, whichever connection it was prepared on; a batch counts once
+        public long getExecutions() {
+            return executions.get();
+        }
+
+        @Override
+        public String toString() {
+            return "executions=" + getExecutions() + ", hits=" + getHits() + ", misses=" + getMisses();
+        }
+    }
+
+    // Returns the statement registered under name on this physical connection, preparing it on first use.
+    PreparedStatement prepare(Connection physical, String name, String sql, boolean returnGeneratedKeys)
+            throws SQLException {
+        String registered = sqlByName.putIfAbsent(name, sql);
+        if (registered != null && !registered.equals(sql)) {
+            throw new IllegalStateException("Statement name '" + name + "' is already registered for different SQL");
+        }
+        Stats stat = stats.computeIfAbsent(name, n -> new Stats());
+        Map<String, PreparedStatement> cache = statements.computeIfAbsent(physical, c -> new ConcurrentHashMap<>());
+
+        PreparedStatement pstmt = cache.get(name);
+        if (pstmt != null && !pstmt.isClosed()) {
+            stat.hits.incrementAndGet();
+            pstmt.clearParameters();
+            return pstmt;
+        }
+        stat.misses.incrementAndGet();
+        PreparedStatement prepared = returnGeneratedKeys
+                ? physical.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)
+                : physical.prepareStatement(sql);
+        pstmt = (PreparedStatement) Proxy.newProxyInstance(StatementRegistry.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class }, new CountingStatement(prepared, stat));
+        cache.put(name, pstmt);
+        return pstmt;
+    }
+
+    // Drops the statements of a physical connection that is being closed.
+    void forget(Connection physical) {
+        statements.remove(physical);
+    }
+
+    //statistics
+    public long getHitCount() {
+        return stats.values().stream().mapToLong(Stats::getHits).sum();
+    }
+    public long getMissCount() {
+        return stats.values().stream().mapToLong(Stats::getMisses).sum();
+    }
+    public long getExecutionCount() {
+        return stats.values().stream().mapToLong(Stats::getExecutions).sum();
+    }
+    // fraction of lookups that reused an already prepared statement
+    public double getHitRatio() {
+        long lookups = getHitCount() + getMissCount();
+        return lookups == 0 ? 0 : (double) getHitCount() / lookups;
+    }
+    // counters by statement name, sorted by name
+    public Map<String, Stats> getStatsByName() {
+        return new TreeMap<>(stats);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(String.format(
+                "StatementRegistry{executions=%d, hits=%d, misses=%d, hitRatio=%.1f%%}",
+                getExecutionCount(), getHitCount(), getMissCount(), getHitRatio() * 100));
+        for (Map.Entry<String, Stats> entry : getStatsByName().entrySet()) {
+            sb.append("\n  ").append(entry.getKey()).append(": ").append(entry.getValue());
+        }
+        return sb.toString();
+    }
+
+    //proxy handler that counts the executions of a registered statement and passes every call on
+    private static class CountingStatement implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final Stats stat;
+
+        CountingStatement(PreparedStatement statement, Stats stat) {
+            this.statement = statement;
+            this.stat = stat;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().startsWith("execute")) {
+                stat.executions.incrementAndGet();
+            }
+            try {
+                return method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
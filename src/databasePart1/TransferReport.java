@@ -0,0 +1,44 @@
+package databasePart1;
+
+/**
+ * The TransferReport class sums up one BoardTransfer export or import: how many questions and
+ * answers went through, archived ones included, and how fast.
+ */
+public class TransferReport {
+    private final long questions;
+    private final long answers;
+    private final long elapsedNanos;
+
+    public TransferReport(long questions, long answers, long elapsedNanos) {
+        this.questions = questions;
+        this.answers = answers;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public long getQuestions() {
+        return questions;
+    }
+    public long getAnswers() {
+        return answers;
+    }
+    // questions and answers together
+    public long getRows() {
+        return questions + answers;
+    }
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+    public double getRowsPerSecond() {
+        return rowsPerSecond(getRows(), elapsedNanos);
+    }
+
+    static double rowsPerSecond(long rows, long nanos) {
+        return nanos == 0 ? 0 : rows / (nanos / 1_000_000_000.0);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("TransferReport{questions=%d, answers=%d, elapsed=%.3fms, rate=%.0f rows/s}",
+                questions, answers, getElapsedMillis(), getRowsPerSecond());
+    }
+}
@@ -0,0 +1,123 @@
+package databasePart1;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The UserDirectoryCache class remembers, per userName, whether the account exists and which role
+ * it has, so repeated role and existence checks don't each go to the database. It holds at most
+ * maxEntries names, evicting the least recently used, and forgets an entry after its time to live
+ * so accounts created by another client sharing the database show up without a restart.
+ *
+ * DatabaseHelper fills the cache from its queries and invalidates a name when it registers it.
+ */
+public class UserDirectoryCache {
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL_MILLIS = 60_000;
+
+    //what is known about one userName; role is null for an account that doesn't exist
+    public static class Entry {
+        private final String role;
+        private final long expiresAt;
+
+        Entry(String role, long expiresAt) {
+            this.role = role;
+            this.expiresAt = expiresAt;
+        }
+        public boolean exists() {
+            return role != null;
+        }
+        public String getRole() {
+            return role;
+        }
+    }
+
+    private final long ttlNanos;
+    private final Map<String, Entry> entries;
+
+    //metrics
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public UserDirectoryCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL_MILLIS);
+    }
+
+    public UserDirectoryCache(int maxEntries, long ttlMillis) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Cache size must be at least 1");
+        }
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    // Returns what is cached for userName, or null if nothing current is cached.
+    public synchronized Entry get(String userName) {
+        Entry entry = entries.get(userName);
+        if (entry != null && System.nanoTime() - entry.expiresAt > 0) {
+            entries.remove(userName);
+            entry = null;
+        }
+        if (entry == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    // Records the role of an existing account.
+    public synchronized void putRole(String userName, String role) {
+        entries.put(userName, new Entry(role, System.nanoTime() + ttlNanos));
+    }
+
+    // Records that no account has this userName.
+    public synchronized void putMissing(String userName) {
+        entries.put(userName, new Entry(null, System.nanoTime() + ttlNanos));
+    }
+
+    // Forgets userName, e.g. after the account was created or changed.
+    public synchronized void invalidate(String userName) {
+        entries.remove(userName);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    //metrics
+    public synchronized int size() {
+        return entries.size();
+    }
+    public long getHitCount() {
+        return hits.get();
+    }
+    public long getMissCount() {
+        return misses.get();
+    }
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+    public double getHitRatio() {
+        long lookups = hits.get() + misses.get();
+        return lookups == 0 ? 0 : (double) hits.get() / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UserDirectoryCache{size=%d, hits=%d, misses=%d, evictions=%d, hitRatio=%.1f%%}",
+                size(), getHitCount(), getMissCount(), getEvictionCount(), getHitRatio() * 100);
+    }
+}
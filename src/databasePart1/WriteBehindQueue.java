@@ -0,0 +1,381 @@
+package databasePart1;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import application.Answer;
+import application.Question;
+
+/**
+ * The WriteBehindQueue class is an optional write-behind front for DiscussionBoardDAO mutations.
+ * Instead of committing every click on its own, mutations wait in a bounded queue and a flusher
+ * thread commits them in groups: a group is written as soon as it reaches the maximum batch size,
+ * or once its oldest mutation has waited the flush interval. Repeated edits of the same Question or
+ * Answer object that are still queued are coalesced into a single UPDATE. Edits of different copies
+ * of one row are each queued, so the versioned compare-and-set lets the first win and fails the
+ * others with StaleUpdateException instead of silently dropping them.
+ *
+ * Every mutation returns a future that completes, on the flusher thread, once its group has
+ * committed. If a group fails, its mutations are retried one transaction each so a single bad
+ * write only fails its own future.
+ */
+public final class WriteBehindQueue implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 100;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 50;
+
+    private final DiscussionBoardDAO dao;
+    private final int capacity;
+    private final int maxBatchSize;
+    private final long flushIntervalNanos;
+    private final Thread flusher;
+
+    //queued mutations, oldest first, and the coalescable ones by target
+    private final ArrayDeque<Pending<?>> queue = new ArrayDeque<>();
+    private final Map<String, Pending<?>> coalescable = new HashMap<>();
+    //the group the flusher has taken and is still writing
+    private List<Pending<?>> inFlight = List.of();
+    private boolean flushRequested;
+    private boolean closed;
+
+    //metrics
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong maxBatch = new AtomicLong();
+    private final AtomicLong totalFlushNanos = new AtomicLong();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+
+    //a mutation run on the flush transaction's connection
+    private interface Write<T> {
+        T apply(Connection connection) throws SQLException;
+    }
+
+    //one queued mutation and everyone waiting on it
+    private static class Pending<T> {
+        final String key;
+        //the object being written; only later writes of the same object are folded into this one
+        final Object target;
+        final long enqueuedAt = System.nanoTime();
+        final List<CompletableFuture<T>> futures = new ArrayList<>();
+        Write<T> write;
+        T result;
+
+        Pending(String key, Object target, Write<T> write) {
+            this.key = key;
+            this.target = target;
+            this.write = write;
+        }
+
+        void run(Connection connection) throws SQLException {
+            result = write.apply(connection);
+        }
+        void complete() {
+            for (CompletableFuture<T> future : futures) {
+                future.complete(result);
+            }
+        }
+        void fail(Throwable e) {
+            for (CompletableFuture<T> future : futures) {
+                future.completeExceptionally(e);
+            }
+        }
+    }
+
+    public WriteBehindQueue(DiscussionBoardDAO dao) {
+        this(dao, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH_SIZE, DEFAULT_FLUSH_INTERVAL_MILLIS);
+    }
+
+    public WriteBehindQueue(DiscussionBoardDAO dao, int capacity, int maxBatchSize, long flushIntervalMillis) {
+        if (capacity < 1 || maxBatchSize < 1 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("Capacity and batch size must be at least 1 and the interval not negative");
+        }
+        this.dao = dao;
+        this.capacity = capacity;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.flusher = new Thread(this::runFlusher, "discussion-board-write-behind");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    //queued mutations, the same operations as DiscussionBoardDAO
+
+    // Inserts an answer; the answer gets its id once the group has committed.
+    public CompletableFuture<Integer> createAnswer(Answer answer) {
+        return enqueue(null, null, null, connection -> dao.createAnswer(connection, answer)).thenApply(id -> {
+            if (id != -1) {
+                answer.setAnswerId(id);
+            }
+            return id;
+        });
+    }
+    // Updates a question; a later update of the same Question object still in the queue replaces this
+    // one. Fails with StaleUpdateException if another client or copy changed the question first.
+    public CompletableFuture<Boolean> updateQuestion(Question question) {
+        return enqueue("question:" + question.getQuestionId(), question, null,
+                connection -> dao.updateQuestion(connection, question)).thenApply(version -> {
+            //only once committed, so a rolled back group never leaves a version that was not written
+            if (version < 0) {
+                return false;
+            }
+            question.setVersion(version);
+            return true;
+        });
+    }
+    // Updates an answer; a later update of the same Answer object still in the queue replaces this
+    // one. Fails with StaleUpdateException if another client or copy changed the answer first.
+    public CompletableFuture<Boolean> updateAnswer(Answer answer) {
+        return enqueue("answer:" + answer.getAnswerId(), answer, null,
+                connection -> dao.updateAnswer(connection, answer)).thenApply(version -> {
+            if (version < 0) {
+                return false;
+            }
+            answer.setVersion(version);
+            return true;
+        });
+    }
+    // Deletes an answer. Updates queued after it are never folded into updates queued before it.
+    public CompletableFuture<Boolean> deleteAnswer(int answerId) {
+        return enqueue(null, null, "answer:" + answerId, connection -> dao.deleteAnswer(connection, answerId));
+    }
+
+    /**
+     * Asks the flusher to write everything queued so far without waiting for the interval. The
+     * returned future completes once all of it has committed.
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        List<CompletableFuture<?>> unwritten = new ArrayList<>(inFlight.size() + queue.size());
+        //the group being written was queued before this call too, so wait for it as well
+        for (Pending<?> pending : inFlight) {
+            unwritten.add(pending.futures.get(0));
+        }
+        for (Pending<?> pending : queue) {
+            unwritten.add(pending.futures.get(0));
+        }
+        //with nothing queued there is nothing to hurry, and a stale request would rush the next write
+        if (!queue.isEmpty()) {
+            flushRequested = true;
+            notifyAll();
+        }
+        //failed writes are reported on their own futures, the flush itself still finishes
+        return CompletableFuture.allOf(unwritten.toArray(new CompletableFuture<?>[0])).handle((v, e) -> null);
+    }
+
+    /**
+     * Stops accepting mutations and waits for the flusher to write everything already queued.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //add a mutation, folding it into a queued one with the same key and target; blocks while the queue is full
+    @SuppressWarnings("unchecked")
+    private synchronized <T> CompletableFuture<T> enqueue(String key, Object target, String barrier, Write<T> write) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+            return future;
+        }
+        if (barrier != null) {
+            coalescable.remove(barrier);
+        }
+        if (key != null) {
+            Pending<T> queued = (Pending<T>) coalescable.get(key);
+            //a write of the same object carries the queued edit forward, so replacing it loses nothing; a
+            //write of another copy was read at the same version and must go through the compare-and-set
+            if (queued != null && queued.target == target) {
+                queued.write = write;
+                queued.futures.add(future);
+                coalescedCount.incrementAndGet();
+                return future;
+            }
+        }
+        try {
+            while (queue.size() >= capacity && !closed) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+        if (closed) {
+            future.completeExceptionally(new IllegalStateException("Write-behind queue is closed"));
+            return future;
+        }
+        Pending<T> pending = new Pending<>(key, target, write);
+        pending.futures.add(future);
+        queue.add(pending);
+        if (key != null) {
+            coalescable.put(key, pending);
+        }
+        notifyAll();
+        return future;
+    }
+
+    //flusher thread: wait for a full batch or the interval, then commit the batch as one transaction
+    private void runFlusher() {
+        while (true) {
+            List<Pending<?>> batch;
+            try {
+                batch = takeBatch();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (batch == null) {
+                return;
+            }
+            flushBatch(batch);
+            batchWritten();
+        }
+    }
+
+    //the next group to write, or null once closed and drained
+    private synchronized List<Pending<?>> takeBatch() throws InterruptedException {
+        while (queue.isEmpty()) {
+            if (closed) {
+                return null;
+            }
+            wait();
+        }
+        long deadline = queue.peek().enqueuedAt + flushIntervalNanos;
+        while (!closed && !flushRequested && queue.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        List<Pending<?>> batch = new ArrayList<>(Math.min(queue.size(), maxBatchSize));
+        while (!queue.isEmpty() && batch.size() < maxBatchSize) {
+            Pending<?> pending = queue.poll();
+            //once taken it is being written, so later edits must queue on their own
+            if (pending.key != null) {
+                coalescable.remove(pending.key, pending);
+            }
+            batch.add(pending);
+        }
+        if (queue.isEmpty()) {
+            flushRequested = false;
+        }
+        inFlight = batch;
+        notifyAll();
+        return batch;
+    }
+
+    //the taken group has committed or failed, and every future in it is complete
+    private synchronized void batchWritten() {
+        inFlight = List.of();
+    }
+
+    private void flushBatch(List<Pending<?>> batch) {
+        long start = System.nanoTime();
+        try {
+            dao.inTransaction(connection -> {
+                for (Pending<?> pending : batch) {
+                    pending.run(connection);
+                }
+                return null;
+            });
+            for (Pending<?> pending : batch) {
+                pending.complete();
+            }
+        } catch (SQLException | RuntimeException e) {
+            //the group rolled back; retry one by one so only the bad write fails
+            for (Pending<?> pending : batch) {
+                try {
+                    dao.inTransaction(connection -> {
+                        pending.run(connection);
+                        return null;
+                    });
+                    pending.complete();
+                } catch (SQLException | RuntimeException single) {
+                    failedCount.incrementAndGet();
+                    pending.fail(single);
+                }
+            }
+        }
+        long end = System.nanoTime();
+        recordFlush(batch, end - start, end);
+    }
+
+    private void recordFlush(List<Pending<?>> batch, long flushNanos, long committedAt) {
+        flushCount.incrementAndGet();
+        writeCount.addAndGet(batch.size());
+        maxBatch.accumulateAndGet(batch.size(), Math::max);
+        totalFlushNanos.addAndGet(flushNanos);
+        maxFlushNanos.accumulateAndGet(flushNanos, Math::max);
+        for (Pending<?> pending : batch) {
+            totalLatencyNanos.addAndGet(committedAt - pending.enqueuedAt);
+        }
+    }
+
+    //metrics
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+    // mutations written, after coalescing
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+    // mutations folded into one already queued
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+    public double getAverageBatchSize() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0 : (double) writeCount.get() / flushes;
+    }
+    public long getMaxBatchSize() {
+        return maxBatch.get();
+    }
+    // time spent writing and committing one group
+    public double getAverageFlushMillis() {
+        long flushes = flushCount.get();
+        return flushes == 0 ? 0 : totalFlushNanos.get() / 1_000_000.0 / flushes;
+    }
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1_000_000.0;
+    }
+    // time from queueing a mutation to its commit
+    public double getAverageLatencyMillis() {
+        long writes = writeCount.get();
+        return writes == 0 ? 0 : totalLatencyNanos.get() / 1_000_000.0 / writes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("WriteBehindQueue{queued=%d, flushes=%d, writes=%d, coalesced=%d, failed=%d, "
+                + "avgBatch=%.1f, maxBatch=%d, avgFlush=%.3fms, maxFlush=%.3fms, avgLatency=%.3fms}",
+                getQueueDepth(), getFlushCount(), getWriteCount(), getCoalescedCount(), getFailedCount(),
+                getAverageBatchSize(), getMaxBatchSize(), getAverageFlushMillis(), getMaxFlushMillis(),
+                getAverageLatencyMillis());
+    }
+}
@@ -0,0 +1,88 @@
+package databaseTestbed;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import application.Answer;
+import application.Question;
+import databasePart1.BoardTransfer;
+import databasePart1.ConnectionPool;
+import databasePart1.DiscussionBoardDAO;
+import databasePart1.TransferReport;
+
+/*******
+ * <p> Title: BoardTransferBenchmark Class. </p>
+ *
+ * <p> Description: Exports a generated board with BoardTransfer, imports the file into a second
+ * board and reports rows per second for each direction, with the heap in use at every progress
+ * report so a flat line can be checked. Both boards are database files in a temporary directory,
+ * so the rows live on disk rather than in the heap being measured. </p>
+ *
+ * <p> Usage: BoardTransferBenchmark [questions] [JSONL|CSV] </p>
+ */
+public class BoardTransferBenchmark {
+
+	static final int DEFAULT_QUESTIONS = 200000;
+	static final int CHUNK = 10000;
+
+	public static void main(String[] args) throws Exception {
+		int questions = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_QUESTIONS;
+		BoardTransfer.Format format = args.length > 1 ? BoardTransfer.Format.valueOf(args[1].toUpperCase())
+				: BoardTransfer.Format.JSONL;
+		Class.forName("org.h2.Driver");
+		Path dir = Files.createTempDirectory("board-transfer");
+		Path file = dir.resolve("board." + format.name().toLowerCase());
+
+		System.out.println("______________________________________");
+		System.out.println("\nBoard transfer benchmark: " + questions + " questions with one answer each, " + format);
+
+		DiscussionBoardDAO source = fileDao(dir, "source");
+		fill(source, questions);
+		BoardTransfer.Progress progress = (rows, rate) ->
+				System.out.printf("  %,12d rows  %,10.0f rows/s  heap %,6d MB%n", rows, rate, usedHeapMb());
+
+		System.out.println("Export:");
+		TransferReport exported = new BoardTransfer(source).export(file, format, progress);
+		System.out.println("Import:");
+		TransferReport imported = new BoardTransfer(fileDao(dir, "target")).importFrom(file, format, progress);
+
+		System.out.println("____________________________________________________________________________");
+		System.out.printf("File:   %,d bytes at %s%n", Files.size(file), file);
+		System.out.printf("Export: %,.0f rows/s (%s)%n", exported.getRowsPerSecond(), exported);
+		System.out.printf("Import: %,.0f rows/s (%s)%n", imported.getRowsPerSecond(), imported);
+	}
+
+	// Creates a DAO over its own database file in dir
+	private static DiscussionBoardDAO fileDao(Path dir, String name) throws Exception {
+		String url = "jdbc:h2:" + dir.resolve(name).toAbsolutePath();
+		return new DiscussionBoardDAO(new ConnectionPool(url, "sa", "", 2, 5000, 600000));
+	}
+
+	// Inserts the questions and their answers in chunks, so generating them stays within the heap too
+	private static void fill(DiscussionBoardDAO dao, int questions) throws Exception {
+		for (int start = 0; start < questions; start += CHUNK) {
+			List<Question> chunk = new ArrayList<>(CHUNK);
+			for (int i = start; i < Math.min(start + CHUNK, questions); i++) {
+				Question q = new Question("Transfer question " + i, "Content, with \"quotes\"\nfor question " + i,
+						"student" + (i % 50));
+				q.setCategory("category" + (i % 10));
+				chunk.add(q);
+			}
+			dao.createQuestions(chunk);
+			List<Answer> answers = new ArrayList<>(chunk.size());
+			for (Question q : chunk) {
+				answers.add(new Answer(q.getQuestionId(), "An answer to question " + q.getQuestionId(), "reviewer"));
+			}
+			dao.createAnswers(answers);
+		}
+	}
+
+	private static long usedHeapMb() {
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		return memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+	}
+}
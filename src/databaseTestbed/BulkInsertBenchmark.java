@@ -0,0 +1,97 @@
+package databaseTestbed;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import application.Answer;
+import application.Question;
+import databasePart1.ConnectionPool;
+import databasePart1.DiscussionBoardDAO;
+
+/*******
+ * <p> Title: BulkInsertBenchmark Class. </p>
+ *
+ * <p> Description: Compares the throughput of DiscussionBoardDAO's single-row inserts
+ * (createQuestion / createAnswer) with the batched bulk inserts (createQuestions /
+ * createAnswers). Each run uses a fresh in-memory database, so the real board is untouched. </p>
+ *
+ * <p> Usage: BulkInsertBenchmark [rows] [batchSize] </p>
+ */
+public class BulkInsertBenchmark {
+
+	static final int DEFAULT_ROWS = 20000;
+
+	public static void main(String[] args) throws Exception {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_ROWS;
+		int batchSize = args.length > 1 ? Integer.parseInt(args[1]) : DiscussionBoardDAO.DEFAULT_BATCH_SIZE;
+		Class.forName("org.h2.Driver");
+
+		System.out.println("______________________________________");
+		System.out.println("\nBulk insert benchmark: " + rows + " questions, " + rows + " answers, batch size " + batchSize);
+
+		// Warm up the JIT and H2 on a throwaway database before measuring
+		runSingleRow(freshDao("warmup1", batchSize), rows / 10);
+		runBatched(freshDao("warmup2", batchSize), rows / 10);
+
+		double single = runSingleRow(freshDao("single", batchSize), rows);
+		double batched = runBatched(freshDao("batched", batchSize), rows);
+
+		System.out.println("____________________________________________________________________________");
+		System.out.printf("Single-row inserts: %,.0f rows/s%n", single);
+		System.out.printf("Batched inserts:    %,.0f rows/s%n", batched);
+		System.out.printf("Speedup:            %.1fx%n", batched / single);
+	}
+
+	// Creates a DAO over its own in-memory database
+	private static DiscussionBoardDAO freshDao(String name, int batchSize) throws Exception {
+		ConnectionPool pool = new ConnectionPool("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "", 2, 5000, 60000);
+		DiscussionBoardDAO dao = new DiscussionBoardDAO(pool);
+		dao.setBatchSize(batchSize);
+		return dao;
+	}
+
+	// Inserts every question and answer with its own statement and commit; returns rows per second
+	private static double runSingleRow(DiscussionBoardDAO dao, int rows) throws Exception {
+		List<Question> questions = makeQuestions(rows);
+		long start = System.nanoTime();
+		for (Question q : questions) {
+			dao.createQuestion(q);
+		}
+		for (Answer a : makeAnswers(questions)) {
+			dao.createAnswer(a);
+		}
+		return rowsPerSecond(2 * rows, System.nanoTime() - start);
+	}
+
+	// Inserts the same rows through the batched API; returns rows per second
+	private static double runBatched(DiscussionBoardDAO dao, int rows) throws Exception {
+		List<Question> questions = makeQuestions(rows);
+		long start = System.nanoTime();
+		dao.createQuestions(questions);
+		dao.createAnswers(makeAnswers(questions));
+		return rowsPerSecond(2 * rows, System.nanoTime() - start);
+	}
+
+	private static List<Question> makeQuestions(int rows) {
+		List<Question> questions = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			Question q = new Question("Benchmark question " + i, "Content for question number " + i, "student" + (i % 50));
+			q.setCategory("category" + (i % 10));
+			questions.add(q);
+		}
+		return questions;
+	}
+
+	// One answer per question; the questions must already have their ids
+	private static List<Answer> makeAnswers(List<Question> questions) {
+		List<Answer> answers = new ArrayList<>(questions.size());
+		for (Question q : questions) {
+			answers.add(new Answer(q.getQuestionId(), "An answer to question " + q.getQuestionId(), "reviewer"));
+		}
+		return answers;
+	}
+
+	private static double rowsPerSecond(int rows, long nanos) {
+		return rows / (nanos / 1_000_000_000.0);
+	}
+}